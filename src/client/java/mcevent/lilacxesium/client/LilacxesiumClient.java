@@ -23,6 +23,8 @@ public class LilacxesiumClient implements ClientModInitializer {
         try {
             LOGGER.info("Registering MusicDodgePayload type...");
             PayloadTypeRegistry.playS2C().register(MusicDodgePayload.TYPE, MusicDodgePayload.CODEC);
+            // 同一频道反向用于上报客户端能力
+            PayloadTypeRegistry.playC2S().register(MusicDodgePayload.TYPE, MusicDodgePayload.CODEC);
             LOGGER.info("MusicDodgePayload type registered successfully");
         } catch (Exception e) {
             LOGGER.error("Failed to register MusicDodgePayload type: {}", e.getMessage(), e);
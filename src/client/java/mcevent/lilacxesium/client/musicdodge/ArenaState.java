@@ -0,0 +1,61 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+/**
+ * 单个场地的攻击状态 - 每个场地有独立的攻击时间表
+ * 场地位置由快照头中的偏移决定，偏移为0时即默认场地
+ */
+public class ArenaState {
+
+    private final String id;
+    private final AttackSchedule schedule = new AttackSchedule();
+
+    // 相对默认场地的偏移（格）
+    private int offsetX = 0;
+    private int offsetZ = 0;
+
+    // 最近一次收到快照的本地时间（毫秒）
+    private long lastUpdateMillis;
+
+    public ArenaState(String id, long nowMillis) {
+        this.id = id;
+        this.lastUpdateMillis = nowMillis;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public AttackSchedule getSchedule() {
+        return schedule;
+    }
+
+    /**
+     * 记录收到一个快照
+     */
+    public void onSnapshot(int offsetX, int offsetZ, long nowMillis) {
+        this.offsetX = offsetX;
+        this.offsetZ = offsetZ;
+        this.lastUpdateMillis = nowMillis;
+    }
+
+    public long getLastUpdateMillis() {
+        return lastUpdateMillis;
+    }
+
+    /**
+     * 水平位置是否在场地范围内
+     */
+    public boolean contains(double x, double z) {
+        return x >= AttackGeometry.FIELD_MIN_X + offsetX && x <= AttackGeometry.FIELD_MAX_X + offsetX + 1
+            && z >= AttackGeometry.FIELD_MIN_Z + offsetZ && z <= AttackGeometry.FIELD_MAX_Z + offsetZ + 1;
+    }
+
+    /**
+     * 水平位置到场地中心的距离平方
+     */
+    public double distanceSq(double x, double z) {
+        double dx = x - ((AttackGeometry.FIELD_MIN_X + AttackGeometry.FIELD_MAX_X + 1) / 2.0 + offsetX);
+        double dz = z - ((AttackGeometry.FIELD_MIN_Z + AttackGeometry.FIELD_MAX_Z + 1) / 2.0 + offsetZ);
+        return dx * dx + dz * dz;
+    }
+}
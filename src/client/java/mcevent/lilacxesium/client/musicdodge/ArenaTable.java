@@ -0,0 +1,116 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 场地表 - 按场地ID分区保存攻击状态，支持同时进行的多场比赛和观战
+ * 摄像机所在（或最近）的场地为焦点场地，渲染时优先分配粒子预算
+ */
+public class ArenaTable {
+
+    // 同时跟踪的场地数上限
+    private static final int MAX_ARENAS = 64;
+
+    // 没有可见攻击且超过该时间未收到快照的场地会被移除（毫秒）
+    private static final long ARENA_TIMEOUT_MILLIS = 30_000;
+
+    private final Map<String, ArenaState> arenas = new HashMap<>();
+    private final List<ArenaState> arenaList = new ArrayList<>();
+    private ArenaState focused;
+
+    /**
+     * 获取场地状态，不存在时创建；场地数已达上限时返回null
+     */
+    public ArenaState getOrCreate(String arenaId, long nowMillis) {
+        ArenaState arena = arenas.get(arenaId);
+        if (arena == null) {
+            if (arenas.size() >= MAX_ARENAS) {
+                return null;
+            }
+            arena = new ArenaState(arenaId, nowMillis);
+            arenas.put(arenaId, arena);
+            arenaList.add(arena);
+        }
+        return arena;
+    }
+
+    /**
+     * 推进所有场地的时间表，并移除长时间没有更新的空场地
+     */
+    public void advance(long serverNow, long localNow) {
+        for (int i = arenaList.size() - 1; i >= 0; i--) {
+            ArenaState arena = arenaList.get(i);
+            arena.getSchedule().advance(serverNow);
+
+            if (arena.getSchedule().getVisibleAttacks().isEmpty()
+                && localNow - arena.getLastUpdateMillis() > ARENA_TIMEOUT_MILLIS) {
+                arenas.remove(arena.getId());
+                arenaList.remove(i);
+                if (arena == focused) {
+                    focused = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * 按摄像机位置选择焦点场地：优先选择包含摄像机的场地，否则选择最近的场地
+     */
+    public void updateFocus(double cameraX, double cameraZ) {
+        if (focused != null && focused.contains(cameraX, cameraZ)) {
+            return;
+        }
+
+        ArenaState nearest = null;
+        double nearestDistance = Double.MAX_VALUE;
+        for (ArenaState arena : arenaList) {
+            if (arena.contains(cameraX, cameraZ)) {
+                nearest = arena;
+                break;
+            }
+            double distance = arena.distanceSq(cameraX, cameraZ);
+            if (distance < nearestDistance) {
+                nearestDistance = distance;
+                nearest = arena;
+            }
+        }
+        focused = nearest;
+    }
+
+    /**
+     * 焦点场地，没有任何场地时返回null
+     */
+    public ArenaState getFocused() {
+        return focused;
+    }
+
+    /**
+     * 收集焦点场地以外的场地的可见攻击
+     */
+    public void collectBackground(List<List<AttackDataDecoder.AttackData>> out) {
+        for (ArenaState arena : arenaList) {
+            if (arena != focused && !arena.getSchedule().getVisibleAttacks().isEmpty()) {
+                out.add(arena.getSchedule().getVisibleAttacks());
+            }
+        }
+    }
+
+    public int size() {
+        return arenaList.size();
+    }
+
+    /**
+     * 清空所有场地
+     */
+    public void clear() {
+        for (ArenaState arena : arenaList) {
+            arena.getSchedule().clear();
+        }
+        arenas.clear();
+        arenaList.clear();
+        focused = null;
+    }
+}
@@ -0,0 +1,174 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ASCII字节解析工具 - 直接在数据包字节上查找分隔符和解析数字，不创建中间字符串
+ * 所有区间都是[start, end)
+ */
+public final class AsciiBytes {
+
+    // 快速路径能精确表示的10的幂
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // 尾数不超过该位数时double运算结果是精确舍入的
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private AsciiBytes() {
+    }
+
+    /**
+     * 查找字节第一次出现的位置，找不到时返回-1
+     */
+    public static int indexOf(byte[] data, char target, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (data[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 统计字节出现的次数
+     */
+    public static int count(byte[] data, char target, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (data[i] == target) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 区间是否只包含空白字符
+     */
+    public static boolean isBlank(byte[] data, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (data[i] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 区间内容是否等于给定的ASCII字符串
+     */
+    public static boolean equalsAscii(byte[] data, int start, int end, String text) {
+        if (end - start != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (data[start + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 区间转换为字符串（只用于少量需要字符串的字段）
+     */
+    public static String toString(byte[] data, int start, int end) {
+        return new String(data, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 解析int，格式要求与Integer.parseInt相同
+     */
+    public static int parseInt(byte[] data, int start, int end) {
+        long value = parseLong(data, start, end);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Value out of range: " + toString(data, start, end));
+        }
+        return (int) value;
+    }
+
+    /**
+     * 解析long，格式要求与Long.parseLong相同
+     */
+    public static long parseLong(byte[] data, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (data[i] == '-' || data[i] == '+')) {
+            negative = data[i] == '-';
+            i++;
+        }
+        if (i == end || end - i > 18) {
+            // 空值或可能溢出，交给标准实现处理（会抛出相同的异常）
+            return Long.parseLong(toString(data, start, end));
+        }
+
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = data[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("For input string: \"" + toString(data, start, end) + "\"");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * 解析double
+     * 常见的短十进制数（不超过15位有效数字，没有指数）直接计算，结果与Double.parseDouble完全一致；
+     * 其他格式回退到Double.parseDouble
+     */
+    public static double parseDouble(byte[] data, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (data[i] == '-' || data[i] == '+')) {
+            negative = data[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+
+        for (; i < end && data[i] >= '0' && data[i] <= '9'; i++) {
+            mantissa = mantissa * 10 + (data[i] - '0');
+            if (mantissa != 0) {
+                digits++;
+            }
+            anyDigit = true;
+            if (digits > MAX_EXACT_DIGITS) {
+                return parseDoubleSlow(data, start, end);
+            }
+        }
+        if (i < end && data[i] == '.') {
+            i++;
+            for (; i < end && data[i] >= '0' && data[i] <= '9'; i++) {
+                mantissa = mantissa * 10 + (data[i] - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+                exponent--;
+                anyDigit = true;
+                if (digits > MAX_EXACT_DIGITS) {
+                    return parseDoubleSlow(data, start, end);
+                }
+            }
+        }
+
+        if (!anyDigit || i != end || -exponent >= POWERS_OF_TEN.length) {
+            // 指数、NaN、空白等其他格式
+            return parseDoubleSlow(data, start, end);
+        }
+
+        double value = exponent == 0 ? mantissa : mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+    private static double parseDoubleSlow(byte[] data, int start, int end) {
+        return Double.parseDouble(toString(data, start, end));
+    }
+}
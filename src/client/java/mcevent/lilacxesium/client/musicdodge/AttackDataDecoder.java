@@ -3,10 +3,9 @@ package mcevent.lilacxesium.client.musicdodge;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 /**
  * 攻击数据解码器 - 客户端版本
@@ -16,6 +15,15 @@ public class AttackDataDecoder {
     
     private static final Logger LOGGER = LoggerFactory.getLogger("AttackDecoder");
     
+    // 快照头前缀，例如 @t=1700000000000,a=arena1,ox=64,oz=0#攻击#攻击
+    public static final char HEADER_PREFIX = '@';
+    
+    // 快照头不带场地ID时使用的默认场地
+    public static final String DEFAULT_ARENA = "";
+    
+    // 按名称匹配攻击类型时遍历的数组（values()每次调用都会复制）
+    private static final AttackType[] ATTACK_TYPES = AttackType.values();
+    
     /**
      * 攻击类型枚举
      */
@@ -24,7 +32,8 @@ public class AttackDataDecoder {
         SQUARE_RING, // 正方形环
         SPIN,       // 旋转激光
         CIRCLE,     // 圆形攻击
-        WALL        // 墙攻击
+        WALL,       // 墙攻击
+        SHAPE       // 服务端注册的形状
     }
     
     /**
@@ -44,11 +53,19 @@ public class AttackDataDecoder {
         public final int ticksRemaining;
         public final AttackParameters parameters;
         
+        // 预警阶段之后攻击阶段的持续时间（tick），0表示未知
+        public final int nextPhaseTicks;
+        
         public AttackData(AttackType type, AttackPhase phase, int ticksRemaining, AttackParameters parameters) {
+            this(type, phase, ticksRemaining, parameters, 0);
+        }
+        
+        public AttackData(AttackType type, AttackPhase phase, int ticksRemaining, AttackParameters parameters, int nextPhaseTicks) {
             this.type = type;
             this.phase = phase;
             this.ticksRemaining = ticksRemaining;
             this.parameters = parameters;
+            this.nextPhaseTicks = nextPhaseTicks;
         }
         
         /**
@@ -59,11 +76,63 @@ public class AttackDataDecoder {
         }
     }
     
+    /**
+     * 攻击快照 - 一个数据包中的全部攻击以及快照头信息
+     */
+    public static class Snapshot {
+        // 服务端发送时间（毫秒），-1表示数据包不带时间戳
+        public final long serverTimeMillis;
+        public final List<AttackData> attacks;
+        
+        // 场地ID以及场地相对默认场地的偏移（格）
+        public final String arenaId;
+        public final int offsetX, offsetZ;
+        
+        public Snapshot(long serverTimeMillis, List<AttackData> attacks) {
+            this(serverTimeMillis, attacks, DEFAULT_ARENA, 0, 0);
+        }
+        
+        public Snapshot(long serverTimeMillis, List<AttackData> attacks, String arenaId, int offsetX, int offsetZ) {
+            this.serverTimeMillis = serverTimeMillis;
+            this.attacks = attacks;
+            this.arenaId = arenaId;
+            this.offsetX = offsetX;
+            this.offsetZ = offsetZ;
+        }
+    }
+    
     /**
      * 攻击参数基类
      */
     public abstract static class AttackParameters {
         public abstract AttackType getType();
+        
+        /**
+         * 按参数值计算的指纹，重新解码得到的相同攻击指纹相同
+         */
+        public abstract long fingerprint();
+        
+        /**
+         * 几何键的长度（writeKey写入的值个数）
+         */
+        public abstract int keyLength();
+        
+        /**
+         * 写入决定几何的全部参数值，指纹相同时用它确认确实是同一攻击
+         */
+        public abstract void writeKey(double[] key);
+        
+        /**
+         * 把一个值混入指纹
+         */
+        protected static long mix(long hash, double value) {
+            return mix(hash, Double.doubleToLongBits(value));
+        }
+        
+        protected static long mix(long hash, long value) {
+            long h = (hash ^ value) * 0x9E3779B97F4A7C15L;
+            return h ^ (h >>> 32);
+        }
     }
     
     /**
@@ -77,6 +146,25 @@ public class AttackDataDecoder {
             this.x2 = x2; this.y2 = y2; this.z2 = z2;
         }
         
+        @Override
+        public long fingerprint() {
+            long h = mix(AttackType.LASER.ordinal(), x1);
+            h = mix(mix(h, y1), z1);
+            return mix(mix(mix(h, x2), y2), z2);
+        }
+        
+        @Override
+        public int keyLength() {
+            return 7;
+        }
+        
+        @Override
+        public void writeKey(double[] key) {
+            key[0] = AttackType.LASER.ordinal();
+            key[1] = x1; key[2] = y1; key[3] = z1;
+            key[4] = x2; key[5] = y2; key[6] = z2;
+        }
+        
         @Override
         public AttackType getType() {
             return AttackType.LASER;
@@ -95,6 +183,25 @@ public class AttackDataDecoder {
             this.innerRadius = innerRadius; this.outerRadius = outerRadius;
         }
         
+        @Override
+        public long fingerprint() {
+            long h = mix(AttackType.SQUARE_RING.ordinal(), centerX);
+            h = mix(mix(h, centerY), centerZ);
+            return mix(mix(h, innerRadius), outerRadius);
+        }
+        
+        @Override
+        public int keyLength() {
+            return 6;
+        }
+        
+        @Override
+        public void writeKey(double[] key) {
+            key[0] = AttackType.SQUARE_RING.ordinal();
+            key[1] = centerX; key[2] = centerY; key[3] = centerZ;
+            key[4] = innerRadius; key[5] = outerRadius;
+        }
+        
         @Override
         public AttackType getType() {
             return AttackType.SQUARE_RING;
@@ -114,6 +221,25 @@ public class AttackDataDecoder {
             this.rayCount = rayCount; this.angleOffset = angleOffset; this.maxDistance = maxDistance;
         }
         
+        @Override
+        public long fingerprint() {
+            long h = mix(AttackType.SPIN.ordinal(), centerX);
+            h = mix(mix(h, centerY), centerZ);
+            return mix(mix(mix(h, rayCount), angleOffset), maxDistance);
+        }
+        
+        @Override
+        public int keyLength() {
+            return 7;
+        }
+        
+        @Override
+        public void writeKey(double[] key) {
+            key[0] = AttackType.SPIN.ordinal();
+            key[1] = centerX; key[2] = centerY; key[3] = centerZ;
+            key[4] = rayCount; key[5] = angleOffset; key[6] = maxDistance;
+        }
+        
         @Override
         public AttackType getType() {
             return AttackType.SPIN;
@@ -131,6 +257,24 @@ public class AttackDataDecoder {
             this.radius = radius;
         }
         
+        @Override
+        public long fingerprint() {
+            long h = mix(AttackType.CIRCLE.ordinal(), centerX);
+            return mix(mix(mix(h, centerY), centerZ), radius);
+        }
+        
+        @Override
+        public int keyLength() {
+            return 5;
+        }
+        
+        @Override
+        public void writeKey(double[] key) {
+            key[0] = AttackType.CIRCLE.ordinal();
+            key[1] = centerX; key[2] = centerY; key[3] = centerZ;
+            key[4] = radius;
+        }
+        
         @Override
         public AttackType getType() {
             return AttackType.CIRCLE;
@@ -144,9 +288,37 @@ public class AttackDataDecoder {
         public final String direction;
         public final double position;
         
+        // 所在场地相对默认场地的偏移（格）
+        public final int offsetX, offsetZ;
+        
         public WallParameters(String direction, double position) {
+            this(direction, position, 0, 0);
+        }
+        
+        public WallParameters(String direction, double position, int offsetX, int offsetZ) {
             this.direction = direction;
             this.position = position;
+            this.offsetX = offsetX;
+            this.offsetZ = offsetZ;
+        }
+        
+        @Override
+        public long fingerprint() {
+            long h = mix(AttackType.WALL.ordinal(), direction.hashCode());
+            return mix(mix(mix(h, position), offsetX), offsetZ);
+        }
+        
+        @Override
+        public int keyLength() {
+            return 5;
+        }
+        
+        @Override
+        public void writeKey(double[] key) {
+            key[0] = AttackType.WALL.ordinal();
+            // 方向只区分几何：x为沿Z延伸，y和z为沿X延伸，其余无效
+            key[1] = AttackGeometry.isWallAlongX(this) ? 0 : AttackGeometry.isWallAlongZ(this) ? 1 : -1;
+            key[2] = position; key[3] = offsetX; key[4] = offsetZ;
         }
         
         @Override
@@ -155,123 +327,407 @@ public class AttackDataDecoder {
         }
     }
     
+    /**
+     * 形状攻击参数 - 引用ShapeRegistry中已编译的形状程序
+     */
+    public static class ShapeParameters extends AttackParameters {
+        public final ShapeProgram program;
+        public final double originX, originY, originZ;
+        public final double[] arguments;
+        
+        // 延迟计算的几何（同一实例在多个tick间复用）
+        private ShapeProgram.Geometry geometry;
+        
+        public ShapeParameters(ShapeProgram program, double originX, double originY, double originZ, double[] arguments) {
+            this.program = program;
+            this.originX = originX; this.originY = originY; this.originZ = originZ;
+            this.arguments = arguments;
+        }
+        
+        /**
+         * 获取形状几何（相对原点），首次调用时求值
+         */
+        public ShapeProgram.Geometry getGeometry() {
+            if (geometry == null) {
+                geometry = program.evaluate(arguments);
+            }
+            return geometry;
+        }
+        
+        @Override
+        public long fingerprint() {
+            long h = mix(AttackType.SHAPE.ordinal(), program.getId().hashCode());
+            h = mix(mix(mix(h, originX), originY), originZ);
+            for (double argument : arguments) {
+                h = mix(h, argument);
+            }
+            return h;
+        }
+        
+        @Override
+        public int keyLength() {
+            return 5 + arguments.length;
+        }
+        
+        @Override
+        public void writeKey(double[] key) {
+            key[0] = AttackType.SHAPE.ordinal();
+            key[1] = program.getSerial();
+            key[2] = originX; key[3] = originY; key[4] = originZ;
+            System.arraycopy(arguments, 0, key, 5, arguments.length);
+        }
+        
+        @Override
+        public AttackType getType() {
+            return AttackType.SHAPE;
+        }
+    }
+    
+    /**
+     * 解码带快照头的攻击数据字符串
+     * 格式：@t=服务端时间,a=场地ID,ox=X偏移,oz=Z偏移#攻击类型|参数|颜色|剩余时间#...
+     * 快照头和其中的每个字段都可省略
+     */
+    public static Snapshot decodeSnapshot(String encodedData) {
+        return decodeSnapshot(toBytes(encodedData));
+    }
+    
+    /**
+     * 直接从数据包字节解码带快照头的攻击数据，不创建中间字符串
+     */
+    public static Snapshot decodeSnapshot(byte[] data) {
+        long serverTime = -1;
+        String arenaId = DEFAULT_ARENA;
+        int offsetX = 0;
+        int offsetZ = 0;
+        int bodyStart = 0;
+        int end = data.length;
+        
+        if (end > 0 && data[0] == HEADER_PREFIX) {
+            int headerEnd = AsciiBytes.indexOf(data, '#', 1, end);
+            if (headerEnd < 0) {
+                headerEnd = end;
+            }
+            bodyStart = Math.min(headerEnd + 1, end);
+            
+            int fieldStart = 1;
+            while (fieldStart < headerEnd) {
+                int fieldEnd = AsciiBytes.indexOf(data, ',', fieldStart, headerEnd);
+                if (fieldEnd < 0) {
+                    fieldEnd = headerEnd;
+                }
+                int separator = AsciiBytes.indexOf(data, '=', fieldStart, fieldEnd);
+                if (separator >= 0) {
+                    try {
+                        if (AsciiBytes.equalsAscii(data, fieldStart, separator, "t")) {
+                            serverTime = AsciiBytes.parseLong(data, separator + 1, fieldEnd);
+                        } else if (AsciiBytes.equalsAscii(data, fieldStart, separator, "a")) {
+                            arenaId = AsciiBytes.toString(data, separator + 1, fieldEnd);
+                        } else if (AsciiBytes.equalsAscii(data, fieldStart, separator, "ox")) {
+                            offsetX = AsciiBytes.parseInt(data, separator + 1, fieldEnd);
+                        } else if (AsciiBytes.equalsAscii(data, fieldStart, separator, "oz")) {
+                            offsetZ = AsciiBytes.parseInt(data, separator + 1, fieldEnd);
+                        }
+                        // 忽略未知字段
+                    } catch (NumberFormatException e) {
+                        // 忽略格式错误的字段
+                    }
+                }
+                fieldStart = fieldEnd + 1;
+            }
+        }
+        
+        return new Snapshot(serverTime, decode(data, bodyStart, end, offsetX, offsetZ), arenaId, offsetX, offsetZ);
+    }
+    
+    /**
+     * 只读取快照头中的场地ID（不解码攻击），用于在邮箱中按场地合并快照
+     * 没有场地ID时不分配任何对象
+     */
+    public static String peekArenaId(byte[] data) {
+        if (data.length == 0 || data[0] != HEADER_PREFIX) {
+            return DEFAULT_ARENA;
+        }
+        
+        int headerEnd = AsciiBytes.indexOf(data, '#', 1, data.length);
+        if (headerEnd < 0) {
+            headerEnd = data.length;
+        }
+        
+        // 字段以"a="开头，位于快照头开始或逗号之后
+        int fieldStart = 1;
+        while (fieldStart < headerEnd) {
+            int fieldEnd = AsciiBytes.indexOf(data, ',', fieldStart, headerEnd);
+            if (fieldEnd < 0) {
+                fieldEnd = headerEnd;
+            }
+            if (fieldEnd - fieldStart >= 2 && data[fieldStart] == 'a' && data[fieldStart + 1] == '=') {
+                return AsciiBytes.toString(data, fieldStart + 2, fieldEnd);
+            }
+            fieldStart = fieldEnd + 1;
+        }
+        return DEFAULT_ARENA;
+    }
+    
     /**
      * 解码攻击数据字符串
-     * 格式：攻击类型|参数|颜色|剩余时间#攻击类型|参数|颜色|剩余时间
+     * 格式：攻击类型|参数|颜色|剩余时间[|攻击时长]#攻击类型|参数|颜色|剩余时间[|攻击时长]
+     * 可选的攻击时长只对预警阶段有效，用于在本地执行预警→攻击的切换
      */
     public static List<AttackData> decode(String encodedData) {
+        return decode(encodedData, 0, 0);
+    }
+    
+    /**
+     * 解码属于偏移场地的攻击数据字符串
+     * 坐标都是世界坐标，只有按场地坐标发送的墙攻击需要场地偏移
+     */
+    public static List<AttackData> decode(String encodedData, int offsetX, int offsetZ) {
+        if (encodedData == null) {
+            return new ArrayList<>();
+        }
+        byte[] data = toBytes(encodedData);
+        return decode(data, 0, data.length, offsetX, offsetZ);
+    }
+    
+    /**
+     * 直接从字节区间[start, end)解码攻击数据
+     */
+    public static List<AttackData> decode(byte[] data, int start, int end, int offsetX, int offsetZ) {
         List<AttackData> attacks = new ArrayList<>();
         
-        if (encodedData == null || encodedData.trim().isEmpty()) {
+        if (AsciiBytes.isBlank(data, start, end)) {
             return attacks;
         }
         
-        String[] attackStrings = encodedData.split("#");
-        for (String attackString : attackStrings) {
+        ParameterReader reader = new ParameterReader(data);
+        int recordStart = start;
+        while (recordStart <= end) {
+            int recordEnd = AsciiBytes.indexOf(data, '#', recordStart, end);
+            if (recordEnd < 0) {
+                recordEnd = end;
+            }
             try {
-                AttackData attack = decodeAttack(attackString);
+                AttackData attack = decodeAttack(data, recordStart, recordEnd, offsetX, offsetZ, reader);
                 if (attack != null) {
                     attacks.add(attack);
-                    
-                    // 计算预警和攻击小节数（假设每小节20tick）
-                    int totalBeats = attack.ticksRemaining / 20;
-                    int alertBeats, attackBeats;
-                    
-                    if (attack.phase == AttackPhase.ALERT) {
-                        alertBeats = totalBeats;
-                        attackBeats = 0;
-                    } else {
-                        // 攻击阶段
-                        alertBeats = 0;
-                        attackBeats = totalBeats;
-                    }
-                    
-                    // 攻击数据解析成功
                 }
             } catch (Exception e) {
                 // 忽略格式错误的攻击数据，继续处理其他数据
             }
+            recordStart = recordEnd + 1;
         }
         
         return attacks;
     }
     
     /**
-     * 解码单个攻击数据
+     * 解码单个攻击数据（字节区间[start, end)）
      */
-    private static AttackData decodeAttack(String attackString) {
-        String[] parts = attackString.split("\\|");
-        if (parts.length != 4) {
+    private static AttackData decodeAttack(byte[] data, int start, int end, int offsetX, int offsetZ,
+                                           ParameterReader reader) {
+        // 攻击类型|参数|颜色|剩余时间[|攻击时长]
+        int typeEnd = AsciiBytes.indexOf(data, '|', start, end);
+        int parametersEnd = typeEnd < 0 ? -1 : AsciiBytes.indexOf(data, '|', typeEnd + 1, end);
+        int colorEnd = parametersEnd < 0 ? -1 : AsciiBytes.indexOf(data, '|', parametersEnd + 1, end);
+        if (colorEnd < 0) {
+            return null;
+        }
+        int ticksEnd = AsciiBytes.indexOf(data, '|', colorEnd + 1, end);
+        if (ticksEnd >= 0 && AsciiBytes.indexOf(data, '|', ticksEnd + 1, end) >= 0) {
             return null;
         }
         
         try {
-            AttackType type = AttackType.valueOf(parts[0]);
-            String parametersString = parts[1];
-            AttackPhase phase = parts[2].equals("GRAY") ? AttackPhase.ALERT : AttackPhase.ATTACK;
-            int ticksRemaining = Integer.parseInt(parts[3]);
+            AttackType type = matchType(data, start, typeEnd);
+            if (type == null) {
+                return null;
+            }
+            AttackPhase phase = AsciiBytes.equalsAscii(data, parametersEnd + 1, colorEnd, "GRAY")
+                ? AttackPhase.ALERT : AttackPhase.ATTACK;
+            int ticksRemaining = AsciiBytes.parseInt(data, colorEnd + 1, ticksEnd < 0 ? end : ticksEnd);
+            int nextPhaseTicks = ticksEnd >= 0 ? AsciiBytes.parseInt(data, ticksEnd + 1, end) : 0;
             
-            AttackParameters parameters = parseParameters(type, parametersString);
+            reader.reset(typeEnd + 1, parametersEnd);
+            AttackParameters parameters = parseParameters(type, reader, offsetX, offsetZ);
             if (parameters == null) {
                 return null;
             }
             
-            return new AttackData(type, phase, ticksRemaining, parameters);
+            return new AttackData(type, phase, ticksRemaining, parameters, nextPhaseTicks);
         } catch (Exception e) {
             return null;
         }
     }
     
+    /**
+     * 按名称匹配攻击类型，不创建字符串
+     */
+    private static AttackType matchType(byte[] data, int start, int end) {
+        for (AttackType type : ATTACK_TYPES) {
+            if (AsciiBytes.equalsAscii(data, start, end, type.name())) {
+                return type;
+            }
+        }
+        return null;
+    }
+    
     /**
      * 解析攻击参数
      */
-    private static AttackParameters parseParameters(AttackType type, String parametersString) {
-        String[] params = parametersString.split(",");
-        
+    static AttackParameters parseParameters(AttackType type, String parametersString) {
+        return parseParameters(type, parametersString, 0, 0);
+    }
+    
+    /**
+     * 解析属于偏移场地的攻击参数
+     */
+    static AttackParameters parseParameters(AttackType type, String parametersString, int offsetX, int offsetZ) {
+        byte[] data = toBytes(parametersString);
+        ParameterReader reader = new ParameterReader(data);
+        reader.reset(0, data.length);
+        return parseParameters(type, reader, offsetX, offsetZ);
+    }
+    
+    /**
+     * 从参数读取器解析攻击参数
+     */
+    private static AttackParameters parseParameters(AttackType type, ParameterReader params, int offsetX, int offsetZ) {
         switch (type) {
             case LASER:
-                if (params.length == 6) {
+                if (params.count() == 6) {
                     return new LaserParameters(
-                        Double.parseDouble(params[0]), Double.parseDouble(params[1]), Double.parseDouble(params[2]),
-                        Double.parseDouble(params[3]), Double.parseDouble(params[4]), Double.parseDouble(params[5])
+                        params.nextDouble(), params.nextDouble(), params.nextDouble(),
+                        params.nextDouble(), params.nextDouble(), params.nextDouble()
                     );
                 }
                 break;
                 
             case SQUARE_RING:
-                if (params.length == 5) {
+                if (params.count() == 5) {
                     return new SquareRingParameters(
-                        Double.parseDouble(params[0]), Double.parseDouble(params[1]), Double.parseDouble(params[2]),
-                        Integer.parseInt(params[3]), Integer.parseInt(params[4])
+                        params.nextDouble(), params.nextDouble(), params.nextDouble(),
+                        params.nextInt(), params.nextInt()
                     );
                 }
                 break;
                 
             case SPIN:
-                if (params.length == 6) {
+                if (params.count() == 6) {
                     return new SpinParameters(
-                        Double.parseDouble(params[0]), Double.parseDouble(params[1]), Double.parseDouble(params[2]),
-                        Integer.parseInt(params[3]), Double.parseDouble(params[4]), Integer.parseInt(params[5])
+                        params.nextDouble(), params.nextDouble(), params.nextDouble(),
+                        params.nextInt(), params.nextDouble(), params.nextInt()
                     );
                 }
                 break;
                 
             case CIRCLE:
-                if (params.length == 4) {
+                if (params.count() == 4) {
                     return new CircleParameters(
-                        Double.parseDouble(params[0]), Double.parseDouble(params[1]), Double.parseDouble(params[2]),
-                        Double.parseDouble(params[3])
+                        params.nextDouble(), params.nextDouble(), params.nextDouble(),
+                        params.nextDouble()
                     );
                 }
                 break;
                 
             case WALL:
-                if (params.length == 2) {
-                    return new WallParameters(params[0], Double.parseDouble(params[1]));
+                if (params.count() == 2) {
+                    return new WallParameters(params.nextDirection(), params.nextDouble(), offsetX, offsetZ);
+                }
+                break;
+                
+            case SHAPE:
+                // 形状ID,originX,originY,originZ,参数0,参数1,...
+                if (params.count() >= 4) {
+                    ShapeProgram program = ShapeRegistry.getInstance().get(params.nextString());
+                    if (program == null || params.count() - 4 < program.getArgumentCount()) {
+                        return null;
+                    }
+                    double originX = params.nextDouble();
+                    double originY = params.nextDouble();
+                    double originZ = params.nextDouble();
+                    double[] arguments = new double[params.count() - 4];
+                    for (int i = 0; i < arguments.length; i++) {
+                        arguments[i] = params.nextDouble();
+                    }
+                    return new ShapeParameters(program, originX, originY, originZ, arguments);
                 }
                 break;
         }
         
         return null;
     }
-}
\ No newline at end of file
+    
+    private static byte[] toBytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * 逗号分隔参数的顺序读取器，在同一次解码中复用
+     */
+    private static final class ParameterReader {
+        private final byte[] data;
+        private int position;
+        private int end;
+        private int count;
+        
+        ParameterReader(byte[] data) {
+            this.data = data;
+        }
+        
+        void reset(int start, int end) {
+            this.position = start;
+            this.end = end;
+            this.count = AsciiBytes.count(data, ',', start, end) + 1;
+        }
+        
+        int count() {
+            return count;
+        }
+        
+        double nextDouble() {
+            int valueEnd = nextEnd();
+            double value = AsciiBytes.parseDouble(data, position, valueEnd);
+            position = valueEnd + 1;
+            return value;
+        }
+        
+        int nextInt() {
+            int valueEnd = nextEnd();
+            int value = AsciiBytes.parseInt(data, position, valueEnd);
+            position = valueEnd + 1;
+            return value;
+        }
+        
+        String nextString() {
+            int valueEnd = nextEnd();
+            String value = AsciiBytes.toString(data, position, valueEnd);
+            position = valueEnd + 1;
+            return value;
+        }
+        
+        /**
+         * 墙方向只有x/y/z三种，直接返回常量
+         */
+        String nextDirection() {
+            int valueEnd = nextEnd();
+            String value;
+            if (valueEnd - position == 1 && data[position] == 'x') {
+                value = "x";
+            } else if (valueEnd - position == 1 && data[position] == 'y') {
+                value = "y";
+            } else if (valueEnd - position == 1 && data[position] == 'z') {
+                value = "z";
+            } else {
+                value = AsciiBytes.toString(data, position, valueEnd);
+            }
+            position = valueEnd + 1;
+            return value;
+        }
+        
+        private int nextEnd() {
+            int comma = AsciiBytes.indexOf(data, ',', position, end);
+            return comma < 0 ? end : comma;
+        }
+    }
+}
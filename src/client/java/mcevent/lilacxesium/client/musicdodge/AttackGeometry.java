@@ -0,0 +1,82 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+/**
+ * 攻击几何定义 - ParticleRenderer和HitTester共用的形状常量
+ * 保证命中判定和粒子显示的形状完全一致
+ */
+public class AttackGeometry {
+
+    // MusicDodge场地范围
+    public static final int FIELD_MIN_X = -7;
+    public static final int FIELD_MAX_X = 35;
+    public static final int FIELD_MIN_Z = -46;
+    public static final int FIELD_MAX_Z = -4;
+    public static final int FIELD_Y = -60;
+
+    // 墙高度（格）
+    public static final int WALL_HEIGHT = 6;
+
+    // 激光和旋转射线的高度（格）
+    public static final int BEAM_HEIGHT = 2;
+
+    // 激光上相邻粒子的间距（格）
+    public static final double LASER_STEP = 0.5;
+
+    // 圆形攻击每格半径对应的圆周点数
+    public static final int CIRCLE_POINTS_PER_RADIUS = 16;
+    public static final int CIRCLE_MIN_POINTS = 16;
+
+    private AttackGeometry() {
+    }
+
+    /**
+     * 旋转攻击第i条射线的角度（弧度）
+     */
+    public static double spinRayRadians(AttackDataDecoder.SpinParameters params, int ray) {
+        return Math.toRadians(params.angleOffset + ray * (360.0 / params.rayCount));
+    }
+
+    /**
+     * 旋转射线在地形中的长度：从中心起逐个整数距离检查，返回第一个固体方块的距离，没有时返回limit
+     * 渲染和命中判定都用它截断射线，粒子间隔只决定在哪些距离绘制，不影响截断位置
+     */
+    public static int spinRayReach(AttackDataDecoder.SpinParameters params, double dirX, double dirZ, int limit,
+                                   SolidityLookup solidity) {
+        for (int distance = 0; distance < limit; distance++) {
+            if (solidity.isSolid(params.centerX + dirX * distance, params.centerY, params.centerZ + dirZ * distance)) {
+                return distance;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * 按粒子间隔绘制长度为reach的射线时的点数（距离0, stride, 2*stride, ...小于reach）
+     */
+    public static int spinRayPoints(int reach, int stride) {
+        return (reach + stride - 1) / stride;
+    }
+
+    /**
+     * 墙是否垂直于X轴
+     */
+    public static boolean isWallAlongX(AttackDataDecoder.WallParameters params) {
+        return params.direction.equals("x");
+    }
+
+    /**
+     * 墙是否垂直于Z轴
+     */
+    public static boolean isWallAlongZ(AttackDataDecoder.WallParameters params) {
+        return params.direction.equals("y") || params.direction.equals("z");
+    }
+
+    /**
+     * 墙所在的世界坐标（游戏坐标转换为世界坐标）
+     */
+    public static double wallWorldCoordinate(AttackDataDecoder.WallParameters params) {
+        return isWallAlongX(params)
+            ? FIELD_MIN_X + params.offsetX + params.position
+            : FIELD_MIN_Z + params.offsetZ + params.position;
+    }
+}
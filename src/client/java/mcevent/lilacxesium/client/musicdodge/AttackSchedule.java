@@ -0,0 +1,129 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 攻击时间表 - 把服务端实时发送的攻击快照换算成服务端时间上的截止时间
+ * 预警→攻击的相位切换和攻击结束都在本地按校正后的服务端时间执行，不需要服务端额外发包
+ */
+public class AttackSchedule {
+
+    // 调度中的攻击
+    private final List<AttackDataDecoder.AttackData> scheduled = new ArrayList<>();
+    private long[] phaseEnds = new long[16];
+    private long[] attackEnds = new long[16];
+
+    // 当前可见的攻击（双缓冲，内容不变时不替换列表）
+    private List<AttackDataDecoder.AttackData> visibleAttacks = new ArrayList<>();
+    private List<AttackDataDecoder.AttackData> scratchAttacks = new ArrayList<>();
+
+    /**
+     * 应用一个新快照
+     * 没有时间戳的旧格式快照中，没有下一相位时长的攻击与原来一样保持显示，直到被下一个快照替换；
+     * 只有带时间戳或带下一相位时长的攻击才在本地调度
+     * @param attacks 快照中的攻击
+     * @param sendTime 快照的发送时间（服务端时间，毫秒）
+     * @param serverNow 当前服务端时间（毫秒）
+     * @param timestamped 快照是否带有服务端时间戳
+     */
+    public void apply(List<AttackDataDecoder.AttackData> attacks, long sendTime, long serverNow, boolean timestamped) {
+        scheduled.clear();
+        ensureCapacity(attacks.size());
+
+        for (int i = 0; i < attacks.size(); i++) {
+            AttackDataDecoder.AttackData attack = attacks.get(i);
+            long phaseEnd = timestamped || attack.nextPhaseTicks > 0
+                ? sendTime + attack.ticksRemaining * ServerClock.MILLIS_PER_TICK
+                : Long.MAX_VALUE;
+
+            scheduled.add(attack);
+            phaseEnds[i] = phaseEnd;
+            attackEnds[i] = attack.phase == AttackDataDecoder.AttackPhase.ALERT && attack.nextPhaseTicks > 0
+                ? phaseEnd + attack.nextPhaseTicks * ServerClock.MILLIS_PER_TICK
+                : -1;
+        }
+
+        // 立即补偿传输延迟期间已经发生的相位切换
+        advance(serverNow, true);
+    }
+
+    /**
+     * 按当前服务端时间执行到期的相位切换和攻击结束
+     * @return 可见攻击是否发生变化
+     */
+    public boolean advance(long serverNow) {
+        return advance(serverNow, false);
+    }
+
+    private boolean advance(long serverNow, boolean forceRebuild) {
+        boolean changed = forceRebuild;
+
+        for (int i = 0; i < scheduled.size(); i++) {
+            AttackDataDecoder.AttackData attack = scheduled.get(i);
+            if (attack == null || serverNow < phaseEnds[i]) {
+                continue;
+            }
+
+            if (attack.phase == AttackDataDecoder.AttackPhase.ATTACK) {
+                // 攻击结束
+                scheduled.set(i, null);
+                changed = true;
+            } else if (attackEnds[i] >= 0) {
+                // 预警结束，切换到攻击阶段
+                int remaining = (int) ((attackEnds[i] - phaseEnds[i]) / ServerClock.MILLIS_PER_TICK);
+                scheduled.set(i, new AttackDataDecoder.AttackData(attack.type, AttackDataDecoder.AttackPhase.ATTACK,
+                    remaining, attack.parameters));
+                phaseEnds[i] = attackEnds[i];
+                attackEnds[i] = -1;
+                changed = true;
+                // 同一tick内可能已经超过攻击结束时间
+                i--;
+            }
+            // 未知攻击时长的预警保持显示，直到服务端发送下一个快照
+        }
+
+        if (changed) {
+            rebuildVisible();
+        }
+        return changed;
+    }
+
+    private void rebuildVisible() {
+        scratchAttacks.clear();
+        for (int i = 0; i < scheduled.size(); i++) {
+            AttackDataDecoder.AttackData attack = scheduled.get(i);
+            if (attack != null) {
+                scratchAttacks.add(attack);
+            }
+        }
+
+        List<AttackDataDecoder.AttackData> previous = visibleAttacks;
+        visibleAttacks = scratchAttacks;
+        scratchAttacks = previous;
+    }
+
+    private void ensureCapacity(int size) {
+        if (phaseEnds.length < size) {
+            int capacity = Math.max(size, phaseEnds.length * 2);
+            phaseEnds = new long[capacity];
+            attackEnds = new long[capacity];
+        }
+    }
+
+    /**
+     * 当前可见的攻击（只读）
+     */
+    public List<AttackDataDecoder.AttackData> getVisibleAttacks() {
+        return visibleAttacks;
+    }
+
+    /**
+     * 清空时间表
+     */
+    public void clear() {
+        scheduled.clear();
+        visibleAttacks.clear();
+        scratchAttacks.clear();
+    }
+}
@@ -0,0 +1,121 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import net.fabricmc.fabric.api.client.networking.v1.C2SPlayChannelEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.minecraft.client.MinecraftClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+
+/**
+ * 客户端能力上报 - 通过mce:musicdodge频道向服务端发送客户端支持的协议版本、编码和当前粒子预算
+ * 服务端据此为每个玩家选择编码，并为性能较弱的客户端减少发送的攻击
+ *
+ * 消息格式：
+ * !CAPS|protocols=1,2|encodings=text,deflate|budget=粒子预算|level=画质等级
+ */
+public class CapabilityReporter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("CapabilityReporter");
+
+    // 协议版本：1 = 基础攻击数据，2 = 快照头、谱面预加载、场地和自定义形状
+    public static final String PROTOCOLS = "1,2";
+
+    // 编码：text = 攻击文本，deflate = Base64(Deflate)预加载谱面
+    public static final String ENCODINGS = "text,deflate";
+
+    // 画质变化后两次上报之间的最小间隔（tick）
+    private static final int MIN_UPDATE_INTERVAL_TICKS = 40;
+
+    // 预算变化小于该比例时不重新上报
+    private static final double MIN_BUDGET_CHANGE = 0.1;
+
+    private final QualityGovernor governor;
+
+    // 上次上报的预算，-1表示本次连接还没有上报
+    private int lastSentBudget = -1;
+    private int ticksSinceSend = 0;
+    private boolean updatePending = false;
+
+    public CapabilityReporter(QualityGovernor governor) {
+        this.governor = governor;
+    }
+
+    /**
+     * 注册连接事件和画质变化监听
+     */
+    public void register() {
+        // 进入服务器时上报；服务端晚于JOIN注册频道时，在频道注册后上报
+        ClientPlayConnectionEvents.JOIN.register((handler, sender, client) -> sendNow());
+        C2SPlayChannelEvents.REGISTER.register((handler, sender, client, channels) -> {
+            if (channels.contains(MusicDodgePayload.ID)) {
+                client.execute(this::sendNow);
+            }
+        });
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> reset());
+
+        governor.addListener(changed -> updatePending = true);
+    }
+
+    /**
+     * 每tick调用，合并画质变化后按最小间隔上报
+     */
+    public void tick() {
+        ticksSinceSend++;
+        if (!updatePending || ticksSinceSend < MIN_UPDATE_INTERVAL_TICKS || lastSentBudget < 0) {
+            return;
+        }
+
+        updatePending = false;
+        int budget = governor.getParticleBudget();
+        if (Math.abs(budget - lastSentBudget) >= lastSentBudget * MIN_BUDGET_CHANGE) {
+            sendNow();
+        }
+    }
+
+    /**
+     * 立即上报当前能力（服务端没有注册频道时不发送）
+     */
+    public void sendNow() {
+        if (MinecraftClient.getInstance().getNetworkHandler() == null
+            || !ClientPlayNetworking.canSend(MusicDodgePayload.TYPE)) {
+            return;
+        }
+
+        String message = buildMessage();
+        try {
+            ClientPlayNetworking.send(MusicDodgePayload.of(message));
+            lastSentBudget = governor.getParticleBudget();
+            ticksSinceSend = 0;
+            updatePending = false;
+
+            if (ClientConfig.getInstance().isLogNetworkData()) {
+                LOGGER.info("Sent capabilities: {}", message);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Failed to send capabilities: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 构造能力消息
+     */
+    public String buildMessage() {
+        return SongPlayback.CONTROL_PREFIX + "CAPS"
+            + "|protocols=" + PROTOCOLS
+            + "|encodings=" + ENCODINGS
+            + "|budget=" + governor.getParticleBudget()
+            + "|level=" + String.format(Locale.ROOT, "%.2f", governor.getLevel());
+    }
+
+    /**
+     * 断开连接时重置
+     */
+    public void reset() {
+        lastSentBudget = -1;
+        ticksSinceSend = 0;
+        updatePending = false;
+    }
+}
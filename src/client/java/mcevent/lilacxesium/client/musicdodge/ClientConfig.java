@@ -1,23 +1,36 @@
 package mcevent.lilacxesium.client.musicdodge;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * 客户端配置管理器
  * 管理MusicDodge客户端的各种设置
  */
 public class ClientConfig {
     
+    private static final Logger LOGGER = LoggerFactory.getLogger("MusicDodgeConfig");
     private static ClientConfig instance;
     
     // 调试选项
     private boolean debugMode = false;
     private boolean showParticleCount = false;
     private boolean logNetworkData = false;
+    private boolean jfrRecording = false;
     
     // 渲染选项
     private float particleScale = 1.0f;
     private boolean enableParticleOptimization = true;
+    private boolean alertPulse = true;
     private int maxParticlesPerFrame = 1000;
     
+    // 自适应画质选项
+    private boolean adaptiveQuality = true;
+    private double targetFrameMillis = 16.6;
+    
+    // 命中提示选项
+    private boolean enableHitFeedback = true;
+    
     // 网络选项
     private boolean enableNetworkCompression = false;
     private int networkTimeout = 5000; // ms
@@ -41,6 +54,7 @@ public class ClientConfig {
         debugMode = Boolean.getBoolean("musicdodge.debug");
         showParticleCount = Boolean.getBoolean("musicdodge.debug.particles");
         logNetworkData = Boolean.getBoolean("musicdodge.debug.network");
+        jfrRecording = Boolean.getBoolean("musicdodge.jfr");
         
         // 从系统属性加载渲染选项
         String scaleStr = System.getProperty("musicdodge.particle.scale");
@@ -64,15 +78,34 @@ public class ClientConfig {
         }
         
         enableParticleOptimization = !Boolean.getBoolean("musicdodge.particle.noopt");
+        alertPulse = !"false".equalsIgnoreCase(System.getProperty("musicdodge.alert.pulse"));
+        
+        // 自适应画质
+        adaptiveQuality = !"false".equalsIgnoreCase(System.getProperty("musicdodge.quality.adaptive"));
+        enableHitFeedback = !"false".equalsIgnoreCase(System.getProperty("musicdodge.hitfeedback"));
+        String targetStr = System.getProperty("musicdodge.quality.target");
+        if (targetStr != null) {
+            try {
+                targetFrameMillis = Double.parseDouble(targetStr);
+                targetFrameMillis = Math.max(4.0, Math.min(100.0, targetFrameMillis));
+            } catch (NumberFormatException e) {
+                targetFrameMillis = 16.6;
+            }
+        }
     }
     
     // Getter方法
     public boolean isDebugMode() { return debugMode; }
     public boolean isShowParticleCount() { return showParticleCount; }
     public boolean isLogNetworkData() { return logNetworkData; }
+    public boolean isJfrRecording() { return jfrRecording; }
     public float getParticleScale() { return particleScale; }
     public boolean isEnableParticleOptimization() { return enableParticleOptimization; }
+    public boolean isAlertPulse() { return alertPulse; }
     public int getMaxParticlesPerFrame() { return maxParticlesPerFrame; }
+    public boolean isAdaptiveQuality() { return adaptiveQuality; }
+    public double getTargetFrameMillis() { return targetFrameMillis; }
+    public boolean isEnableHitFeedback() { return enableHitFeedback; }
     public boolean isEnableNetworkCompression() { return enableNetworkCompression; }
     public int getNetworkTimeout() { return networkTimeout; }
     
@@ -86,9 +119,15 @@ public class ClientConfig {
     public void setEnableParticleOptimization(boolean enableParticleOptimization) { 
         this.enableParticleOptimization = enableParticleOptimization; 
     }
+    public void setAlertPulse(boolean alertPulse) { this.alertPulse = alertPulse; }
     public void setMaxParticlesPerFrame(int maxParticlesPerFrame) { 
         this.maxParticlesPerFrame = Math.max(100, Math.min(10000, maxParticlesPerFrame)); 
     }
+    public void setAdaptiveQuality(boolean adaptiveQuality) { this.adaptiveQuality = adaptiveQuality; }
+    public void setEnableHitFeedback(boolean enableHitFeedback) { this.enableHitFeedback = enableHitFeedback; }
+    public void setTargetFrameMillis(double targetFrameMillis) { 
+        this.targetFrameMillis = Math.max(4.0, Math.min(100.0, targetFrameMillis)); 
+    }
     
     /**
      * 重新加载配置
@@ -101,6 +140,13 @@ public class ClientConfig {
      * 打印当前配置
      */
     public void printConfig() {
-        // 配置信息已移除以减少日志输出
+        LOGGER.info("MusicDodge client config:");
+        LOGGER.info("  debugMode={}, showParticleCount={}, logNetworkData={}, jfrRecording={}",
+            debugMode, showParticleCount, logNetworkData, jfrRecording);
+        LOGGER.info("  particleScale={}, enableParticleOptimization={}, maxParticlesPerFrame={}, alertPulse={}",
+            particleScale, enableParticleOptimization, maxParticlesPerFrame, alertPulse);
+        LOGGER.info("  adaptiveQuality={}, targetFrameMillis={}, enableHitFeedback={}",
+            adaptiveQuality, targetFrameMillis, enableHitFeedback);
+        LOGGER.info("  enableNetworkCompression={}, networkTimeout={}ms", enableNetworkCompression, networkTimeout);
     }
 }
\ No newline at end of file
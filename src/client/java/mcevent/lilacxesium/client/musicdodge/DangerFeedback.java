@@ -0,0 +1,79 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import net.fabricmc.fabric.api.client.rendering.v1.HudRenderCallback;
+import net.minecraft.client.gui.DrawContext;
+import net.minecraft.client.render.RenderTickCounter;
+
+/**
+ * 危险提示 - 根据HitTester的结果在屏幕边缘绘制提示
+ * 站在攻击区域内时红色闪烁，站在预警区域内时显示淡橙色边框
+ */
+public class DangerFeedback implements HudRenderCallback {
+
+    // 红色闪烁持续时间（毫秒）
+    private static final long FLASH_MILLIS = 300;
+
+    // 边框宽度（像素）
+    private static final int BORDER = 8;
+
+    private static final int HIT_RGB = 0xFF2020;
+    private static final int HIT_MAX_ALPHA = 0x90;
+    private static final int WARNING_COLOR = 0x40FFA040;
+
+    private HitTester.Danger danger = HitTester.Danger.NONE;
+    private long flashStartMillis = 0;
+
+    /**
+     * 注册HUD渲染回调
+     */
+    public void register() {
+        HudRenderCallback.EVENT.register(this);
+    }
+
+    /**
+     * 更新当前的危险等级（每tick调用）
+     */
+    public void update(HitTester.Danger newDanger) {
+        if (newDanger == HitTester.Danger.HIT && danger != HitTester.Danger.HIT) {
+            flashStartMillis = ServerClock.localMillis();
+        }
+        danger = newDanger;
+    }
+
+    /**
+     * 清除提示
+     */
+    public void reset() {
+        danger = HitTester.Danger.NONE;
+        flashStartMillis = 0;
+    }
+
+    public HitTester.Danger getDanger() {
+        return danger;
+    }
+
+    @Override
+    public void onHudRender(DrawContext drawContext, RenderTickCounter tickCounter) {
+        if (danger == HitTester.Danger.NONE) {
+            return;
+        }
+
+        int color;
+        if (danger == HitTester.Danger.HIT) {
+            // 进入攻击区域时先亮后逐渐减弱到一半
+            long elapsed = ServerClock.localMillis() - flashStartMillis;
+            float fade = Math.min(1.0f, (float) elapsed / FLASH_MILLIS);
+            int alpha = (int) (HIT_MAX_ALPHA * (1.0f - 0.5f * fade));
+            color = (alpha << 24) | HIT_RGB;
+        } else {
+            color = WARNING_COLOR;
+        }
+
+        int width = drawContext.getScaledWindowWidth();
+        int height = drawContext.getScaledWindowHeight();
+        drawContext.fill(0, 0, width, BORDER, color);
+        drawContext.fill(0, height - BORDER, width, height, color);
+        drawContext.fill(0, BORDER, BORDER, height - BORDER, color);
+        drawContext.fill(width - BORDER, BORDER, width, height - BORDER, color);
+    }
+}
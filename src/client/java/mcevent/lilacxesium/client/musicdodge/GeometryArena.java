@@ -0,0 +1,234 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 几何内存区 - 以一局歌曲为作用域，把攻击解析后的点坐标按x,y,z打包写入堆外的float分片
+ * 分片按指针递增分配，歌曲结束或清除攻击时整体重置并留给下一局复用；同一攻击重复出现时直接复用，
+ * 渲染器直接读取分片，不复制
+ *
+ * 按参数指纹索引，每条几何前保存完整的几何键（攻击的参数值），查找时逐个比较；
+ * 指纹碰撞时保留先保存的几何，碰撞的一方不写入内存区，由调用方直接从构建缓冲区渲染
+ *
+ * 几何句柄：高32位为分片序号，低32位为分片内的float偏移。偏移处的布局（整数以int位模式保存在float中）：
+ * [几何键(每个double占2个float)][键长度] | 句柄 -> [点数][列数][x,y,z...][列起点...]
+ * 列数为0表示每个点单独成列，没有列起点表；否则列起点表有列数+1项，最后一项为点数
+ */
+public class GeometryArena {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("GeometryArena");
+
+    // 每个分片的float数（1MB）
+    private static final int SLAB_FLOATS = 256 * 1024;
+
+    // 分片总数上限（约64MB），超过时整体重置
+    private static final int MAX_SLABS = 64;
+
+    // 没有几何时返回的句柄
+    public static final long NO_GEOMETRY = -1;
+
+    // 指纹已被另一个几何占用时返回的句柄
+    public static final long FINGERPRINT_COLLISION = -2;
+
+    // 几何键中每个double占用的float数
+    private static final int FLOATS_PER_KEY_VALUE = Double.BYTES / Float.BYTES;
+
+    // 同一分片的两个视图：float视图供渲染器读取点坐标，字节视图按原始位写入和比较几何键
+    private final List<FloatBuffer> slabs = new ArrayList<>();
+    private final List<ByteBuffer> slabBytes = new ArrayList<>();
+    private final LongLongHashMap index = new LongLongHashMap(256);
+    private int currentSlab = 0;
+    private int slabOffset = 0;
+
+    /**
+     * 查找已保存的几何：指纹命中后还要求几何键完全相同
+     * @param key 几何键，前keyLength项有效
+     * @return 几何句柄；没有保存时返回NO_GEOMETRY，指纹被另一个几何占用时返回FINGERPRINT_COLLISION
+     */
+    public long find(long fingerprint, double[] key, int keyLength) {
+        long handle = index.get(fingerprint, NO_GEOMETRY);
+        if (handle == NO_GEOMETRY) {
+            return NO_GEOMETRY;
+        }
+        return keyMatches(handle, key, keyLength) ? handle : FINGERPRINT_COLLISION;
+    }
+
+    /**
+     * 保存几何：data中先是count个点的x,y,z，列数大于0时紧接着是columnCount+1项列起点（int位模式）
+     * 只在find()返回NO_GEOMETRY后调用，指纹碰撞的几何不保存，否则两个同时存在的攻击会每tick互相覆盖并重复写入
+     * @return 几何句柄，空间不足时返回NO_GEOMETRY
+     */
+    public long store(long fingerprint, double[] key, int keyLength, float[] data, int count, int columnCount) {
+        int keyFloats = keyLength * FLOATS_PER_KEY_VALUE + 1;
+        int dataFloats = count * 3 + (columnCount > 0 ? columnCount + 1 : 0);
+        int floats = keyFloats + 2 + dataFloats;
+        long start = allocate(floats);
+        if (start == NO_GEOMETRY) {
+            // 本局几何过多，丢弃全部缓存后重试一次
+            LOGGER.warn("Geometry arena full ({} slabs), resetting", slabs.size());
+            reset();
+            start = allocate(floats);
+            if (start == NO_GEOMETRY) {
+                return NO_GEOMETRY;
+            }
+        }
+
+        long handle = start + keyFloats;
+        ByteBuffer bytes = slabBytes.get(slabIndex(handle));
+        int offset = offset(handle);
+        for (int i = 0; i < keyLength; i++) {
+            bytes.putDouble(keyByteOffset(offset, keyLength, i), key[i]);
+        }
+        bytes.putInt((offset - 1) * Float.BYTES, keyLength);
+        bytes.putInt(offset * Float.BYTES, count);
+        bytes.putInt((offset + 1) * Float.BYTES, columnCount);
+        slab(handle).put(offset + 2, data, 0, dataFloats);
+        index.put(fingerprint, handle);
+        return handle;
+    }
+
+    /**
+     * 几何所在的分片（直接读取，不复制）
+     */
+    public FloatBuffer slab(long handle) {
+        return slabs.get(slabIndex(handle));
+    }
+
+    /**
+     * 几何第一个点的x坐标在分片中的偏移
+     */
+    public int pointsOffset(long handle) {
+        return offset(handle) + 2;
+    }
+
+    /**
+     * 几何的点数
+     */
+    public int count(long handle) {
+        return Float.floatToRawIntBits(slab(handle).get(offset(handle)));
+    }
+
+    /**
+     * 几何的列数，0表示每个点单独成列
+     */
+    public int columnCount(long handle) {
+        return Float.floatToRawIntBits(slab(handle).get(offset(handle) + 1));
+    }
+
+    /**
+     * 列起点表在分片中的偏移（列数为0时没有意义）
+     */
+    public int columnsOffset(long handle) {
+        return pointsOffset(handle) + count(handle) * 3;
+    }
+
+    /**
+     * 已使用的字节数
+     */
+    public long usedBytes() {
+        long used = 0;
+        for (int i = 0; i < currentSlab && i < slabs.size(); i++) {
+            used += (long) slabs.get(i).capacity() * Float.BYTES;
+        }
+        return used + (long) slabOffset * Float.BYTES;
+    }
+
+    /**
+     * 丢弃全部几何（歌曲结束、清除攻击或空间不足时调用），分片保留下来供下一局复用
+     */
+    public void reset() {
+        index.clear();
+        currentSlab = 0;
+        slabOffset = 0;
+    }
+
+    /**
+     * 丢弃全部几何和分片的引用（关闭时调用）
+     * 直接缓冲区没有显式释放的接口，堆外内存要等GC回收这些缓冲区对象后才会交还
+     */
+    public void release() {
+        reset();
+        slabs.clear();
+        slabBytes.clear();
+    }
+
+    private boolean keyMatches(long handle, double[] key, int keyLength) {
+        ByteBuffer bytes = slabBytes.get(slabIndex(handle));
+        int offset = offset(handle);
+        if (bytes.getInt((offset - 1) * Float.BYTES) != keyLength) {
+            return false;
+        }
+        for (int i = 0; i < keyLength; i++) {
+            double stored = bytes.getDouble(keyByteOffset(offset, keyLength, i));
+            if (Double.doubleToLongBits(stored) != Double.doubleToLongBits(key[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 几何键第i项的字节偏移（键保存在句柄之前，紧挨着键长度）
+     */
+    private static int keyByteOffset(int offset, int keyLength, int i) {
+        return (offset - 1 - (keyLength - i) * FLOATS_PER_KEY_VALUE) * Float.BYTES;
+    }
+
+    private static int slabIndex(long handle) {
+        return (int) (handle >>> 32);
+    }
+
+    private static int offset(long handle) {
+        return (int) handle;
+    }
+
+    /**
+     * 在当前分片中按指针递增分配，不够时换到下一个分片
+     */
+    private long allocate(int floats) {
+        while (currentSlab < MAX_SLABS) {
+            if (currentSlab == slabs.size()) {
+                addSlab(Math.max(SLAB_FLOATS, floats));
+            }
+
+            FloatBuffer slab = slabs.get(currentSlab);
+            if (slabOffset + floats <= slab.capacity()) {
+                long handle = ((long) currentSlab << 32) | slabOffset;
+                slabOffset += floats;
+                return handle;
+            }
+
+            if (slabOffset == 0) {
+                // 复用的分片比这个几何小，换成更大的分片
+                setSlab(currentSlab, floats);
+                continue;
+            }
+            currentSlab++;
+            slabOffset = 0;
+        }
+        return NO_GEOMETRY;
+    }
+
+    private void addSlab(int floats) {
+        ByteBuffer bytes = newSlab(floats);
+        slabBytes.add(bytes);
+        slabs.add(bytes.asFloatBuffer());
+    }
+
+    private void setSlab(int slabIndex, int floats) {
+        ByteBuffer bytes = newSlab(floats);
+        slabBytes.set(slabIndex, bytes);
+        slabs.set(slabIndex, bytes.asFloatBuffer());
+    }
+
+    private static ByteBuffer newSlab(int floats) {
+        return ByteBuffer.allocateDirect(floats * Float.BYTES).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,277 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import java.nio.FloatBuffer;
+
+/**
+ * 几何构建器 - 把攻击参数展开成按完整密度排列的点，写入几何内存区并定位当前攻击的几何
+ * 不依赖世界和粒子，渲染器和测试共用
+ */
+public class GeometryBuilder {
+    
+    private final GeometryArena geometryArena;
+    
+    // 圆弧的x/z偏移（复用，按需扩容）
+    private double[] arcX = new double[256];
+    private double[] arcZ = new double[256];
+    
+    // 几何构建缓冲区（x,y,z交错，之后是列起点表），写入几何内存区失败或指纹碰撞时直接从这里渲染
+    private float[] points = new float[3 * 1024];
+    private FloatBuffer pointsView = FloatBuffer.wrap(points);
+    private int buildColumnCount;
+    
+    // 几何键缓冲区（复用，按需扩容）
+    private double[] geometryKey = new double[16];
+    
+    // 当前攻击几何的位置（几何内存区的分片或构建缓冲区）
+    private FloatBuffer geometrySlab;
+    private int geometryOffset;
+    private int geometryCount;
+    private int geometryColumnCount;
+    private int geometryColumnsOffset;
+    
+    public GeometryBuilder(GeometryArena geometryArena) {
+        this.geometryArena = geometryArena;
+    }
+    
+    /**
+     * 定位攻击的几何：同一攻击（指纹和几何键都相同）只在首次出现时构建一次，之后直接读取几何内存区
+     * 几何按完整密度构建，画质由渲染时的间隔控制，因此缓存的几何与画质无关
+     * 旋转攻击的射线随地形截断，不在这里构建，点数为0
+     */
+    public void resolve(AttackDataDecoder.AttackParameters params) {
+        long fingerprint = params.fingerprint();
+        int keyLength = params.keyLength();
+        if (geometryKey.length < keyLength) {
+            geometryKey = new double[Math.max(keyLength, geometryKey.length * 2)];
+        }
+        params.writeKey(geometryKey);
+        
+        long handle = geometryArena.find(fingerprint, geometryKey, keyLength);
+        if (handle < 0) {
+            buildColumnCount = 0;
+            int count = buildGeometry(params);
+            // 指纹碰撞时不覆盖另一个几何，每次都直接从构建缓冲区渲染
+            if (handle == GeometryArena.NO_GEOMETRY) {
+                handle = geometryArena.store(fingerprint, geometryKey, keyLength, points, count, buildColumnCount);
+            }
+            if (handle < 0) {
+                geometrySlab = pointsView;
+                geometryOffset = 0;
+                geometryCount = count;
+                geometryColumnCount = buildColumnCount;
+                geometryColumnsOffset = count * 3;
+                return;
+            }
+        }
+        geometrySlab = geometryArena.slab(handle);
+        geometryOffset = geometryArena.pointsOffset(handle);
+        geometryCount = geometryArena.count(handle);
+        geometryColumnCount = geometryArena.columnCount(handle);
+        geometryColumnsOffset = geometryArena.columnsOffset(handle);
+    }
+    
+    /**
+     * 把攻击的几何构建到构建缓冲区
+     * @return 点数
+     */
+    private int buildGeometry(AttackDataDecoder.AttackParameters params) {
+        return switch (params.getType()) {
+            case LASER -> buildLaser((AttackDataDecoder.LaserParameters) params);
+            case SQUARE_RING -> buildSquareRing((AttackDataDecoder.SquareRingParameters) params);
+            case CIRCLE -> buildCircle((AttackDataDecoder.CircleParameters) params);
+            case WALL -> buildWall((AttackDataDecoder.WallParameters) params);
+            case SHAPE -> buildShape((AttackDataDecoder.ShapeParameters) params);
+            default -> 0;
+        };
+    }
+    
+    /**
+     * 激光：从起点到终点每0.5格一个点
+     */
+    private int buildLaser(AttackDataDecoder.LaserParameters params) {
+        double dx = params.x2 - params.x1;
+        double dy = params.y2 - params.y1;
+        double dz = params.z2 - params.z1;
+        double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (distance == 0) {
+            return 0;
+        }
+        dx /= distance;
+        dy /= distance;
+        dz /= distance;
+        
+        ensurePointCapacity((int) Math.ceil(distance / AttackGeometry.LASER_STEP) + 1);
+        int count = 0;
+        for (double d = 0; d < distance; d += AttackGeometry.LASER_STEP) {
+            count = putPoint(count, params.x1 + dx * d, params.y1 + dy * d, params.z1 + dz * d);
+        }
+        return count;
+    }
+    
+    /**
+     * 正方形环：从内半径到外半径的每一圈边框
+     */
+    private int buildSquareRing(AttackDataDecoder.SquareRingParameters params) {
+        int rings = Math.max(0, params.outerRadius - params.innerRadius + 1);
+        ensurePointCapacity(rings * (8 * Math.max(Math.abs(params.innerRadius), Math.abs(params.outerRadius)) + 4));
+        
+        int count = 0;
+        for (int radius = params.innerRadius; radius <= params.outerRadius; radius++) {
+            // 上边和下边
+            for (int x = -radius; x <= radius; x++) {
+                count = putPoint(count, params.centerX + x, params.centerY, params.centerZ - radius);
+            }
+            for (int x = -radius; x <= radius; x++) {
+                count = putPoint(count, params.centerX + x, params.centerY, params.centerZ + radius);
+            }
+            // 左边和右边（排除角落）
+            for (int z = -radius + 1; z < radius; z++) {
+                count = putPoint(count, params.centerX - radius, params.centerY, params.centerZ + z);
+            }
+            for (int z = -radius + 1; z < radius; z++) {
+                count = putPoint(count, params.centerX + radius, params.centerY, params.centerZ + z);
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * 圆形：圆周上的点由几何内核批量计算
+     */
+    private int buildCircle(AttackDataDecoder.CircleParameters params) {
+        int count = Math.max(AttackGeometry.CIRCLE_MIN_POINTS,
+            (int) (params.radius * AttackGeometry.CIRCLE_POINTS_PER_RADIUS));
+        
+        if (arcX.length < count) {
+            arcX = new double[Math.max(count, arcX.length * 2)];
+            arcZ = new double[arcX.length];
+        }
+        ensurePointCapacity(count);
+        GeometryKernel.arc(params.radius, 0.0, 2 * Math.PI / count, count, arcX, arcZ, 0);
+        for (int i = 0; i < count; i++) {
+            putPoint(i, params.centerX + arcX[i], params.centerY, params.centerZ + arcZ[i]);
+        }
+        return count;
+    }
+    
+    /**
+     * 墙：按列排列，每列是同一位置从下到上的WALL_HEIGHT层
+     */
+    private int buildWall(AttackDataDecoder.WallParameters params) {
+        boolean alongX = AttackGeometry.isWallAlongX(params);
+        if (!alongX && !AttackGeometry.isWallAlongZ(params)) {
+            return 0;
+        }
+        
+        // 将游戏坐标转换为世界坐标
+        double fixed = AttackGeometry.wallWorldCoordinate(params);
+        int min = alongX ? AttackGeometry.FIELD_MIN_Z + params.offsetZ : AttackGeometry.FIELD_MIN_X + params.offsetX;
+        int max = alongX ? AttackGeometry.FIELD_MAX_Z + params.offsetZ : AttackGeometry.FIELD_MAX_X + params.offsetX;
+        int columns = max - min + 1;
+        ensurePointCapacity(columns * AttackGeometry.WALL_HEIGHT, columns);
+        
+        int count = 0;
+        for (int i = min; i <= max; i++) {
+            putColumnStart(columns * AttackGeometry.WALL_HEIGHT, i - min, count);
+            for (int y = 0; y < AttackGeometry.WALL_HEIGHT; y++) {
+                // 垂直于X轴的墙沿Z方向延伸，垂直于Z轴的墙沿X方向延伸
+                count = alongX
+                    ? putPoint(count, fixed, AttackGeometry.FIELD_Y + y, i)
+                    : putPoint(count, i, AttackGeometry.FIELD_Y + y, fixed);
+            }
+        }
+        putColumnStart(count, columns, count);
+        buildColumnCount = columns;
+        return count;
+    }
+    
+    /**
+     * 形状：形状程序求值得到的相对坐标加上原点，保留形状的列结构
+     */
+    private int buildShape(AttackDataDecoder.ShapeParameters params) {
+        ShapeProgram.Geometry geometry = params.getGeometry();
+        int count = geometry.count;
+        ensurePointCapacity(count, geometry.columnCount);
+        
+        for (int i = 0; i < count; i++) {
+            putPoint(i, params.originX + geometry.xs[i], params.originY + geometry.ys[i], params.originZ + geometry.zs[i]);
+        }
+        for (int column = 0; column <= geometry.columnCount; column++) {
+            putColumnStart(count, column, geometry.columnStarts[column]);
+        }
+        buildColumnCount = geometry.columnCount;
+        return count;
+    }
+    
+    /**
+     * 写入构建缓冲区的第index个点
+     * @return 下一个点的序号
+     */
+    private int putPoint(int index, double x, double y, double z) {
+        int base = index * 3;
+        points[base] = (float) x;
+        points[base + 1] = (float) y;
+        points[base + 2] = (float) z;
+        return index + 1;
+    }
+    
+    /**
+     * 写入构建缓冲区中第column列的起点（列起点表紧跟在count个点之后，以int位模式保存）
+     */
+    private void putColumnStart(int count, int column, int start) {
+        points[count * 3 + column] = Float.intBitsToFloat(start);
+    }
+    
+    /**
+     * 确保构建缓冲区能容纳count个点
+     */
+    private void ensurePointCapacity(int count) {
+        ensurePointCapacity(count, 0);
+    }
+    
+    /**
+     * 确保构建缓冲区能容纳count个点和columns列的列起点表
+     */
+    private void ensurePointCapacity(int count, int columns) {
+        int floats = count * 3 + columns + 1;
+        if (points.length < floats) {
+            points = new float[Math.max(floats, points.length * 2)];
+            pointsView = FloatBuffer.wrap(points);
+        }
+    }
+    
+    /**
+     * 当前几何所在的缓冲区（直接读取，不复制）
+     */
+    public FloatBuffer getSlab() {
+        return geometrySlab;
+    }
+    
+    /**
+     * 当前几何第一个点的x坐标在缓冲区中的偏移
+     */
+    public int getPointsOffset() {
+        return geometryOffset;
+    }
+    
+    /**
+     * 当前几何的点数
+     */
+    public int getCount() {
+        return geometryCount;
+    }
+    
+    /**
+     * 当前几何的列数，0表示每个点单独成列
+     */
+    public int getColumnCount() {
+        return geometryColumnCount;
+    }
+    
+    /**
+     * 当前几何第column列的第一个点（column等于列数时返回点数）
+     */
+    public int getColumnStart(int column) {
+        return Float.floatToRawIntBits(geometrySlab.get(geometryColumnsOffset + column));
+    }
+}
@@ -0,0 +1,36 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+/**
+ * 几何批量计算内核 - 一次性计算整条射线或整段圆弧上所有点相对中心的x/z偏移
+ * 使用double计算，与HitTester的逐点计算结果完全相同，粒子落在哪个方块与命中判定一致
+ *
+ * 只有标量实现：Vector API需要在编译和启动时加上--add-modules=jdk.incubator.vector，正式的启动器不会传这个参数
+ */
+public final class GeometryKernel {
+
+    private GeometryKernel() {
+    }
+
+    /**
+     * 计算射线上的点：第i个点为 (dirX, dirZ) * (i * spacing)
+     */
+    public static void ray(double dirX, double dirZ, int count, double spacing, double[] xs, double[] zs, int offset) {
+        for (int i = 0; i < count; i++) {
+            double distance = i * spacing;
+            xs[offset + i] = dirX * distance;
+            zs[offset + i] = dirZ * distance;
+        }
+    }
+
+    /**
+     * 计算圆弧上的点：第i个点的角度为 startRadians + i * stepRadians
+     */
+    public static void arc(double radius, double startRadians, double stepRadians, int count,
+                           double[] xs, double[] zs, int offset) {
+        for (int i = 0; i < count; i++) {
+            double angle = startRadians + i * stepRadians;
+            xs[offset + i] = radius * Math.cos(angle);
+            zs[offset + i] = radius * Math.sin(angle);
+        }
+    }
+}
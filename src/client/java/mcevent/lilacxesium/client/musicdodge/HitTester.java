@@ -0,0 +1,265 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import net.minecraft.util.math.Box;
+
+import java.util.List;
+
+/**
+ * 客户端命中判定 - 每tick用玩家碰撞箱与所有活跃攻击的几何形状做相交测试
+ * 形状与ParticleRenderer绘制的粒子完全一致（共用AttackGeometry），
+ * 结果只用于本地即时提示，真正的命中仍由服务端判定
+ */
+public class HitTester {
+
+    // 粒子本身的半径，碰撞箱外扩该距离后再测试
+    private static final double HIT_MARGIN = 0.3;
+
+    /**
+     * 危险等级
+     */
+    public enum Danger {
+        NONE,       // 安全
+        WARNING,    // 站在预警区域内
+        HIT         // 站在攻击区域内
+    }
+
+    // 线段裁剪的当前参数区间
+    private double clipMin;
+    private double clipMax;
+
+    /**
+     * 测试玩家碰撞箱与攻击列表
+     * @param solidity 截断旋转射线的地形
+     */
+    public Danger test(List<AttackDataDecoder.AttackData> attacks, Box box, SolidityLookup solidity) {
+        Danger result = Danger.NONE;
+
+        for (int i = 0; i < attacks.size(); i++) {
+            AttackDataDecoder.AttackData attack = attacks.get(i);
+            boolean isAttack = attack.phase == AttackDataDecoder.AttackPhase.ATTACK;
+            if (!isAttack && result == Danger.WARNING) {
+                continue;
+            }
+
+            if (intersects(attack, box, solidity)) {
+                if (isAttack) {
+                    return Danger.HIT;
+                }
+                result = Danger.WARNING;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * 测试单个攻击
+     */
+    public boolean intersects(AttackDataDecoder.AttackData attack, Box box, SolidityLookup solidity) {
+        return switch (attack.type) {
+            case LASER -> intersectsLaser((AttackDataDecoder.LaserParameters) attack.parameters, box);
+            case SQUARE_RING -> intersectsSquareRing((AttackDataDecoder.SquareRingParameters) attack.parameters, box);
+            case SPIN -> intersectsSpin((AttackDataDecoder.SpinParameters) attack.parameters, box, solidity);
+            case CIRCLE -> intersectsCircle((AttackDataDecoder.CircleParameters) attack.parameters, box);
+            case WALL -> intersectsWall((AttackDataDecoder.WallParameters) attack.parameters, box);
+            case SHAPE -> intersectsShape((AttackDataDecoder.ShapeParameters) attack.parameters, box);
+        };
+    }
+
+    /**
+     * 激光：从起点到终点的线段，向上延伸BEAM_HEIGHT格
+     */
+    private boolean intersectsLaser(AttackDataDecoder.LaserParameters params, Box box) {
+        double t = clipBeam(params.x1, params.y1, params.z1,
+            params.x2 - params.x1, params.y2 - params.y1, params.z2 - params.z1, box);
+        return t >= 0;
+    }
+
+    /**
+     * 正方形环：中心切比雪夫距离在[内半径, 外半径]之间的一层粒子
+     */
+    private boolean intersectsSquareRing(AttackDataDecoder.SquareRingParameters params, Box box) {
+        if (!overlapsY(box, params.centerY, params.centerY)) {
+            return false;
+        }
+
+        double minX = box.minX - HIT_MARGIN - params.centerX;
+        double maxX = box.maxX + HIT_MARGIN - params.centerX;
+        double minZ = box.minZ - HIT_MARGIN - params.centerZ;
+        double maxZ = box.maxZ + HIT_MARGIN - params.centerZ;
+
+        // 碰撞箱内到中心的最小和最大切比雪夫距离
+        double nearest = Math.max(distanceToInterval(minX, maxX), distanceToInterval(minZ, maxZ));
+        double farthest = Math.max(Math.max(Math.abs(minX), Math.abs(maxX)), Math.max(Math.abs(minZ), Math.abs(maxZ)));
+
+        return nearest <= params.outerRadius && farthest >= params.innerRadius;
+    }
+
+    /**
+     * 旋转射线：每条射线从中心出发，碰到固体方块时截断
+     */
+    private boolean intersectsSpin(AttackDataDecoder.SpinParameters params, Box box, SolidityLookup solidity) {
+        int lastDistance = params.maxDistance - 1;
+        if (lastDistance < 0) {
+            return false;
+        }
+
+        // 粗略排除：碰撞箱离中心比射线还远
+        double reach = lastDistance + HIT_MARGIN;
+        if (distanceToInterval(box.minX - params.centerX, box.maxX - params.centerX) > reach
+            || distanceToInterval(box.minZ - params.centerZ, box.maxZ - params.centerZ) > reach) {
+            return false;
+        }
+
+        for (int i = 0; i < params.rayCount; i++) {
+            double angle = AttackGeometry.spinRayRadians(params, i);
+            double dirX = Math.cos(angle);
+            double dirZ = Math.sin(angle);
+
+            double t = clipBeam(params.centerX, params.centerY, params.centerZ,
+                dirX * lastDistance, 0, dirZ * lastDistance, box);
+            if (t < 0) {
+                continue;
+            }
+
+            // 射线在进入碰撞箱之前是否已被固体方块截断（与渲染使用同一个截断函数）
+            double enterDistance = t * lastDistance;
+            int limit = Math.min((int) Math.ceil(enterDistance + 1), params.maxDistance);
+            if (AttackGeometry.spinRayReach(params, dirX, dirZ, limit, solidity) >= limit) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * 圆形：圆周上的一圈粒子
+     */
+    private boolean intersectsCircle(AttackDataDecoder.CircleParameters params, Box box) {
+        if (!overlapsY(box, params.centerY, params.centerY)) {
+            return false;
+        }
+
+        double minX = box.minX - params.centerX;
+        double maxX = box.maxX - params.centerX;
+        double minZ = box.minZ - params.centerZ;
+        double maxZ = box.maxZ - params.centerZ;
+
+        // 碰撞箱内到圆心的最小和最大距离
+        double nearX = distanceToInterval(minX, maxX);
+        double nearZ = distanceToInterval(minZ, maxZ);
+        double farX = Math.max(Math.abs(minX), Math.abs(maxX));
+        double farZ = Math.max(Math.abs(minZ), Math.abs(maxZ));
+        double nearest = Math.sqrt(nearX * nearX + nearZ * nearZ);
+        double farthest = Math.sqrt(farX * farX + farZ * farZ);
+
+        return nearest <= params.radius + HIT_MARGIN && farthest >= params.radius - HIT_MARGIN;
+    }
+
+    /**
+     * 墙：场地内一整面WALL_HEIGHT格高的粒子
+     */
+    private boolean intersectsWall(AttackDataDecoder.WallParameters params, Box box) {
+        if (!overlapsY(box, AttackGeometry.FIELD_Y, AttackGeometry.FIELD_Y + AttackGeometry.WALL_HEIGHT - 1)) {
+            return false;
+        }
+
+        double coordinate = AttackGeometry.wallWorldCoordinate(params);
+        if (AttackGeometry.isWallAlongX(params)) {
+            return overlaps(box.minX, box.maxX, coordinate, coordinate)
+                && overlaps(box.minZ, box.maxZ,
+                    AttackGeometry.FIELD_MIN_Z + params.offsetZ, AttackGeometry.FIELD_MAX_Z + params.offsetZ);
+        } else if (AttackGeometry.isWallAlongZ(params)) {
+            return overlaps(box.minZ, box.maxZ, coordinate, coordinate)
+                && overlaps(box.minX, box.maxX,
+                    AttackGeometry.FIELD_MIN_X + params.offsetX, AttackGeometry.FIELD_MAX_X + params.offsetX);
+        }
+        return false;
+    }
+
+    /**
+     * 形状：逐点测试，先用包围盒粗略排除
+     */
+    private boolean intersectsShape(AttackDataDecoder.ShapeParameters params, Box box) {
+        ShapeProgram.Geometry geometry = params.getGeometry();
+        if (geometry.count == 0) {
+            return false;
+        }
+        
+        double minX = box.minX - HIT_MARGIN - params.originX;
+        double maxX = box.maxX + HIT_MARGIN - params.originX;
+        double minY = box.minY - HIT_MARGIN - params.originY;
+        double maxY = box.maxY + HIT_MARGIN - params.originY;
+        double minZ = box.minZ - HIT_MARGIN - params.originZ;
+        double maxZ = box.maxZ + HIT_MARGIN - params.originZ;
+        
+        if (geometry.maxX < minX || geometry.minX > maxX
+            || geometry.maxY < minY || geometry.minY > maxY
+            || geometry.maxZ < minZ || geometry.minZ > maxZ) {
+            return false;
+        }
+        
+        for (int i = 0; i < geometry.count; i++) {
+            float x = geometry.xs[i];
+            float y = geometry.ys[i];
+            float z = geometry.zs[i];
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 将向上延伸BEAM_HEIGHT格的线段与外扩后的碰撞箱求交
+     * @return 进入碰撞箱的参数t（0~1），不相交时返回-1
+     */
+    private double clipBeam(double x, double y, double z, double dx, double dy, double dz, Box box) {
+        clipMin = 0;
+        clipMax = 1;
+
+        // 粒子在y到y+BEAM_HEIGHT-1之间，等价于把碰撞箱向下扩展
+        boolean hit = clipAxis(x, dx, box.minX - HIT_MARGIN, box.maxX + HIT_MARGIN)
+            && clipAxis(y, dy, box.minY - (AttackGeometry.BEAM_HEIGHT - 1) - HIT_MARGIN, box.maxY + HIT_MARGIN)
+            && clipAxis(z, dz, box.minZ - HIT_MARGIN, box.maxZ + HIT_MARGIN);
+
+        return hit ? clipMin : -1;
+    }
+
+    /**
+     * 在单个轴上裁剪线段参数区间（Liang-Barsky）
+     */
+    private boolean clipAxis(double origin, double delta, double min, double max) {
+        if (Math.abs(delta) < 1e-9) {
+            return origin >= min && origin <= max;
+        }
+
+        double t1 = (min - origin) / delta;
+        double t2 = (max - origin) / delta;
+        clipMin = Math.max(clipMin, Math.min(t1, t2));
+        clipMax = Math.min(clipMax, Math.max(t1, t2));
+        return clipMin <= clipMax;
+    }
+
+    private static boolean overlapsY(Box box, double minY, double maxY) {
+        return overlaps(box.minY, box.maxY, minY, maxY);
+    }
+
+    private static boolean overlaps(double minA, double maxA, double minB, double maxB) {
+        return minA - HIT_MARGIN <= maxB && maxA + HIT_MARGIN >= minB;
+    }
+
+    /**
+     * 区间[min, max]内离0最近的点到0的距离
+     */
+    private static double distanceToInterval(double min, double max) {
+        if (min > 0) {
+            return min;
+        }
+        if (max < 0) {
+            return -max;
+        }
+        return 0;
+    }
+}
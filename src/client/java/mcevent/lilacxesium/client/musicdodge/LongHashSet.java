@@ -0,0 +1,100 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import java.util.Arrays;
+
+/**
+ * long开放寻址哈希集合 - 每tick复用，不装箱
+ * 清空时只递增代数，槽位的代数不等于当前代数即视为空，不需要重新分配或填充数组
+ */
+public class LongHashSet {
+
+    private static final float MAX_LOAD = 0.5f;
+
+    private long[] keys;
+    private int[] generations;
+    private int mask;
+    private int size = 0;
+    private int generation = 1;
+
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        keys = new long[capacity];
+        generations = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * 添加元素
+     * @return 元素原本不在集合中时返回true
+     */
+    public boolean add(long key) {
+        int slot = slot(key);
+        while (generations[slot] == generation) {
+            if (keys[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        generations[slot] = generation;
+        if (++size > keys.length * MAX_LOAD) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * 是否包含元素
+     */
+    public boolean contains(long key) {
+        int slot = slot(key);
+        while (generations[slot] == generation) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 清空集合（O(1)，只递增代数）
+     */
+    public void clear() {
+        size = 0;
+        generation++;
+        if (generation == 0) {
+            // 代数回绕时旧槽位可能被误认为有效，重置一次
+            Arrays.fill(generations, 0);
+            generation = 1;
+        }
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldGenerations = generations;
+        int oldGeneration = generation;
+
+        keys = new long[oldKeys.length * 2];
+        generations = new int[oldKeys.length * 2];
+        mask = keys.length - 1;
+        generation = 1;
+        size = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldGenerations[i] == oldGeneration) {
+                add(oldKeys[i]);
+            }
+        }
+    }
+}
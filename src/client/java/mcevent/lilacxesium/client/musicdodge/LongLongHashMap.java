@@ -0,0 +1,103 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import java.util.Arrays;
+
+/**
+ * long到long的开放寻址哈希表 - 与LongHashSet相同，清空时只递增代数，不装箱
+ */
+public class LongLongHashMap {
+
+    private static final float MAX_LOAD = 0.5f;
+
+    private long[] keys;
+    private long[] values;
+    private int[] generations;
+    private int mask;
+    private int size = 0;
+    private int generation = 1;
+
+    public LongLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        keys = new long[capacity];
+        values = new long[capacity];
+        generations = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * 查找键对应的值，不存在时返回defaultValue
+     */
+    public long get(long key, long defaultValue) {
+        int slot = slot(key);
+        while (generations[slot] == generation) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return defaultValue;
+    }
+
+    /**
+     * 写入键值，已存在时覆盖
+     */
+    public void put(long key, long value) {
+        int slot = slot(key);
+        while (generations[slot] == generation) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        generations[slot] = generation;
+        if (++size > keys.length * MAX_LOAD) {
+            grow();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 清空（O(1)，只递增代数）
+     */
+    public void clear() {
+        size = 0;
+        generation++;
+        if (generation == 0) {
+            // 代数回绕时旧槽位可能被误认为有效，重置一次
+            Arrays.fill(generations, 0);
+            generation = 1;
+        }
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        int[] oldGenerations = generations;
+        int oldGeneration = generation;
+
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldKeys.length * 2];
+        generations = new int[oldKeys.length * 2];
+        mask = keys.length - 1;
+        generation = 1;
+        size = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldGenerations[i] == oldGeneration) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
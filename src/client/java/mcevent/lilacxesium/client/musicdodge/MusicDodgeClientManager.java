@@ -2,10 +2,17 @@ package mcevent.lilacxesium.client.musicdodge;
 
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientWorldEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.world.World;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -19,11 +26,24 @@ public class MusicDodgeClientManager {
     
     private final NetworkHandler networkHandler;
     private final ParticleRenderer particleRenderer;
+    private final QualityGovernor qualityGovernor;
+    private final PerformanceHud performanceHud;
+    private final SongPlayback songPlayback;
+    private final ServerClock serverClock;
+    private final ArenaTable arenaTable;
+    private final HitTester hitTester;
+    private final WorldSolidity worldSolidity;
+    private final DangerFeedback dangerFeedback;
+    private final CapabilityReporter capabilityReporter;
+    private final GeometryArena geometryArena;
     private final MinecraftClient client;
     
     private boolean isEnabled = false;
     private boolean isInGame = false;
-    private List<AttackDataDecoder.AttackData> currentAttacks;
+    private RegistryKey<World> lastWorldKey;
+    
+    // 焦点场地以外的场地的可见攻击（每tick复用）
+    private final List<List<AttackDataDecoder.AttackData>> backgroundAttacks = new ArrayList<>();
     
     /**
      * 私有构造函数（单例模式）
@@ -31,10 +51,21 @@ public class MusicDodgeClientManager {
     private MusicDodgeClientManager() {
         this.client = MinecraftClient.getInstance();
         this.networkHandler = new NetworkHandler();
-        this.particleRenderer = new ParticleRenderer();
+        this.qualityGovernor = new QualityGovernor();
+        this.serverClock = new ServerClock();
+        this.geometryArena = new GeometryArena();
+        this.songPlayback = new SongPlayback(serverClock);
+        this.particleRenderer = new ParticleRenderer(qualityGovernor, songPlayback, geometryArena);
+        this.performanceHud = new PerformanceHud(qualityGovernor);
+        this.arenaTable = new ArenaTable();
+        this.hitTester = new HitTester();
+        this.worldSolidity = new WorldSolidity();
+        this.dangerFeedback = new DangerFeedback();
+        this.capabilityReporter = new CapabilityReporter(qualityGovernor);
         
         // 设置攻击数据处理器
         this.networkHandler.setAttackDataHandler(this::handleAttackData);
+        this.networkHandler.setControlMessageHandler(this::handleControlMessage);
         
         // 注册客户端事件
         registerClientEvents();
@@ -61,6 +92,12 @@ public class MusicDodgeClientManager {
         // 注册网络处理器
         networkHandler.register();
         isEnabled = true;
+        
+        if (ClientConfig.getInstance().isDebugMode()) {
+            ClientConfig.getInstance().printConfig();
+        }
+        
+        MusicDodgeJfr.startRecordingIfConfigured(client.runDirectory.toPath());
     }
     
     /**
@@ -73,10 +110,16 @@ public class MusicDodgeClientManager {
         
         // 取消注册网络处理器
         networkHandler.unregister();
+        MusicDodgeJfr.stopRecording();
         
         // 清除当前攻击数据
-        currentAttacks = null;
-        isInGame = false;
+        clearAttacks();
+        serverClock.reset();
+        ShapeRegistry.getInstance().clear();
+        geometryArena.release();
+        MusicDodgeMetrics.getInstance().reset();
+        setInGame(false);
+        lastWorldKey = null;
         isEnabled = false;
     }
     
@@ -87,70 +130,189 @@ public class MusicDodgeClientManager {
         // 客户端关闭时清理
         ClientLifecycleEvents.CLIENT_STOPPING.register(client -> shutdown());
         
-        // 每tick检查游戏状态
+        // 世界切换和连接变化时检查游戏状态，tick中不再做检测
+        ClientWorldEvents.AFTER_CLIENT_WORLD_CHANGE.register((client, world) -> updateGameState(world));
+        ClientPlayConnectionEvents.JOIN.register((handler, sender, client) -> updateGameState(client.world));
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
+            updateGameState(null);
+            networkHandler.clearPending();
+            serverClock.reset();
+            ShapeRegistry.getInstance().clear();
+        });
+        
+        // 每tick渲染攻击粒子
         ClientTickEvents.END_CLIENT_TICK.register(this::onClientTick);
+        
+        // 画质调节和性能HUD
+        qualityGovernor.register();
+        performanceHud.register();
+        dangerFeedback.register();
+        capabilityReporter.register();
     }
     
     /**
      * 客户端tick事件处理
      */
     private void onClientTick(MinecraftClient client) {
-        if (!isEnabled || client.world == null || client.player == null) {
+        if (!isEnabled) {
+            return;
+        }
+        
+        // 不在MusicDodge世界中、没有歌曲也没有控制消息时不做任何工作
+        if (!isInGame && !songPlayback.isActive() && !networkHandler.hasControlMessages()) {
             return;
         }
         
-        // 检查是否在MusicDodge世界中
-        updateGameState();
+        // 控制消息（谱面预加载、开始/跳转）在收到后的下一个tick处理，不论是否在MusicDodge世界中；
+        // 有歌曲时时钟也持续推进，进入世界时不需要回放积压的消息
+        boolean wasPlaying = songPlayback.isPlaying();
+        networkHandler.processControlMessages();
+        serverClock.tick();
+        songPlayback.tick();
+        
+        // 歌曲结束（停止消息、加载下一首或全部攻击结束）时丢弃本局的几何
+        if (wasPlaying && !songPlayback.isPlaying()) {
+            geometryArena.reset();
+        }
+        
+        // 不在MusicDodge世界中时不做其他工作
+        if (!isInGame || client.world == null || client.player == null) {
+            return;
+        }
+        
+        // 解码本tick收到的攻击快照（每个场地只解码最新的一个）
+        networkHandler.processSnapshots();
+        
+        // 按服务端时间执行到期的相位切换
+        arenaTable.advance(serverClock.serverNow(), ServerClock.localMillis());
+        
+        // 摄像机所在的场地优先渲染（观战时摄像机可能不在玩家身上）
+        Vec3d camera = client.gameRenderer.getCamera().getPos();
+        arenaTable.updateFocus(camera.x, camera.z);
         
         // 立即渲染攻击粒子，无冷却延迟
-        if (isInGame && currentAttacks != null && !currentAttacks.isEmpty()) {
-            particleRenderer.renderAttacks(currentAttacks);
+        List<AttackDataDecoder.AttackData> attacks = getCurrentAttacks();
+        backgroundAttacks.clear();
+        arenaTable.collectBackground(backgroundAttacks);
+        int alive = attacks.size();
+        for (List<AttackDataDecoder.AttackData> arenaAttacks : backgroundAttacks) {
+            alive += arenaAttacks.size();
+        }
+        MusicDodgeMetrics.getInstance().setAttacksAlive(alive);
+        long renderStart = System.nanoTime();
+        particleRenderer.renderAttacks(attacks, backgroundAttacks);
+        qualityGovernor.onTick(System.nanoTime() - renderStart);
+        capabilityReporter.tick();
+        
+        // 本地命中判定只针对焦点场地，立即给出危险提示
+        if (ClientConfig.getInstance().isEnableHitFeedback() && !attacks.isEmpty()) {
+            worldSolidity.setWorld(client.world);
+            dangerFeedback.update(hitTester.test(attacks, client.player.getBoundingBox(), worldSolidity));
+        } else {
+            dangerFeedback.update(HitTester.Danger.NONE);
         }
     }
     
     /**
-     * 更新游戏状态
+     * 更新游戏状态（世界切换或连接变化时调用）
      */
-    private void updateGameState() {
-        if (client.world == null) {
-            isInGame = false;
+    private void updateGameState(ClientWorld world) {
+        RegistryKey<World> worldKey = world != null ? world.getRegistryKey() : null;
+        
+        // RegistryKey是驻留的，同一世界直接比较引用即可
+        if (worldKey == lastWorldKey) {
             return;
         }
+        lastWorldKey = worldKey;
         
-        // 检查是否在MusicDodge世界中
-        String worldName = client.world.getRegistryKey().getValue().toString();
-        boolean shouldBeInGame = worldName.contains("musicdodge");
-        
-        if (shouldBeInGame != isInGame) {
-            isInGame = shouldBeInGame;
-            
-            if (!isInGame) {
-                // 离开MusicDodge世界时清除攻击数据
-                currentAttacks = null;
-            }
-        }
+        // 检查是否在MusicDodge世界中（只在世界变化时计算一次）
+        boolean shouldBeInGame = worldKey != null && worldKey.getValue().toString().contains("musicdodge");
+        setInGame(shouldBeInGame);
     }
     
     /**
      * 处理接收到的攻击数据
      */
-    private void handleAttackData(List<AttackDataDecoder.AttackData> attacks) {
+    private void handleAttackData(AttackDataDecoder.Snapshot snapshot, long receivedAt) {
         if (!isEnabled) {
             return;
         }
         
-        // 存储攻击数据
-        this.currentAttacks = attacks;
+        List<AttackDataDecoder.AttackData> attacks = snapshot.attacks;
+        ArenaState arena = arenaTable.getOrCreate(snapshot.arenaId, receivedAt);
+        if (arena == null) {
+            LOGGER.warn("Too many arenas, ignoring snapshot for arena {}", snapshot.arenaId);
+            return;
+        }
+        arena.onSnapshot(snapshot.offsetX, snapshot.offsetZ, receivedAt);
+        AttackSchedule attackSchedule = arena.getSchedule();
         
+        MusicDodgeJfr.SnapshotSwapEvent swapEvent = new MusicDodgeJfr.SnapshotSwapEvent();
+        swapEvent.begin();
+        int previousCount = attackSchedule.getVisibleAttacks().size();
         
+        // 按服务端时间调度攻击数据；只有带时间戳的快照才补偿传输延迟
+        boolean timestamped = snapshot.serverTimeMillis >= 0;
+        if (timestamped) {
+            serverClock.onServerTimestamp(snapshot.serverTimeMillis, receivedAt);
+        }
+        long sendTime = serverClock.estimateSendTime(snapshot.serverTimeMillis, receivedAt);
+        attackSchedule.apply(attacks, sendTime, serverClock.toServerTime(receivedAt), timestamped);
+
+        swapEvent.end();
+        if (swapEvent.shouldCommit()) {
+            swapEvent.previousAttackCount = previousCount;
+            swapEvent.attackCount = attacks.size();
+            for (AttackDataDecoder.AttackData attack : attacks) {
+                if (attack.phase == AttackDataDecoder.AttackPhase.ALERT) {
+                    swapEvent.alertCount++;
+                }
+            }
+            swapEvent.commit();
+        }
+        
+        if (ClientConfig.getInstance().isDebugMode()) {
+            LOGGER.info("Received {} attacks for arena '{}'", attacks.size(), snapshot.arenaId);
+            for (AttackDataDecoder.AttackData attack : attacks) {
+                LOGGER.info("Attack: {}, Phase: {}, Remaining: {} ticks", attack.type, attack.phase, attack.ticksRemaining);
+            }
+        }
     }
     
     
+    /**
+     * 处理谱面预加载和播放控制消息
+     */
+    private void handleControlMessage(String message, long receivedAt) {
+        if (!isEnabled) {
+            return;
+        }
+        
+        if (ShapeRegistry.isShapeMessage(message)) {
+            ShapeRegistry.getInstance().handleControlMessage(message);
+            return;
+        }
+        
+        songPlayback.handleControlMessage(message, receivedAt);
+    }
+    
     /**
      * 获取当前攻击数据（只读）
+     * 播放预加载谱面时返回谱面中的活跃攻击，否则返回焦点场地中服务端实时发送的攻击
      */
     public List<AttackDataDecoder.AttackData> getCurrentAttacks() {
-        return currentAttacks;
+        if (songPlayback.isPlaying()) {
+            return songPlayback.getActiveAttacks();
+        }
+        ArenaState focused = arenaTable.getFocused();
+        return focused != null ? focused.getSchedule().getVisibleAttacks() : List.of();
+    }
+    
+    /**
+     * 获取场地表
+     */
+    public ArenaTable getArenaTable() {
+        return arenaTable;
     }
     
     /**
@@ -174,6 +336,34 @@ public class MusicDodgeClientManager {
         return networkHandler;
     }
     
+    /**
+     * 获取画质调节器
+     */
+    public QualityGovernor getQualityGovernor() {
+        return qualityGovernor;
+    }
+    
+    /**
+     * 获取谱面播放器
+     */
+    public SongPlayback getSongPlayback() {
+        return songPlayback;
+    }
+    
+    /**
+     * 获取服务端时钟估计器
+     */
+    public ServerClock getServerClock() {
+        return serverClock;
+    }
+    
+    /**
+     * 获取命中判定器
+     */
+    public HitTester getHitTester() {
+        return hitTester;
+    }
+    
     /**
      * 获取粒子渲染器（用于测试或高级用法）
      */
@@ -182,16 +372,30 @@ public class MusicDodgeClientManager {
     }
     
     /**
-     * 手动设置游戏状态（用于测试）
+     * 设置游戏状态（世界切换时调用，也可手动调用用于测试）
      */
     public void setInGame(boolean inGame) {
-        this.isInGame = inGame;
+        if (inGame == isInGame) {
+            return;
+        }
+        
+        isInGame = inGame;
+        qualityGovernor.setActive(inGame);
+        
+        if (!isInGame) {
+            // 离开MusicDodge世界时清除攻击数据
+            clearAttacks();
+        }
     }
     
     /**
      * 手动清除攻击数据
      */
     public void clearAttacks() {
-        this.currentAttacks = null;
+        arenaTable.clear();
+        dangerFeedback.reset();
+        songPlayback.reset();
+        geometryArena.reset();
+        MusicDodgeMetrics.getInstance().setAttacksAlive(0);
     }
 }
\ No newline at end of file
@@ -0,0 +1,179 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MusicDodge的JFR（Java Flight Recorder）事件定义
+ * 所有事件默认关闭，通过随Mod附带的musicdodge.jfc配置启用
+ */
+public class MusicDodgeJfr {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("MusicDodgeJfr");
+
+    // 随Mod附带的JFR配置文件
+    public static final String SETTINGS_RESOURCE = "/musicdodge.jfc";
+
+    private static Recording recording;
+
+    /**
+     * 接收Payload事件（网络线程上放入邮箱的过程；解码在客户端tick中进行，由Decode事件记录）
+     */
+    @Name("mcevent.musicdodge.PayloadReceive")
+    @Label("MusicDodge Payload Receive")
+    @Category({"Lilacxesium", "MusicDodge"})
+    @Description("收到一个mce:musicdodge数据包并放入邮箱")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class PayloadReceiveEvent extends Event {
+        @Label("Payload Size")
+        @DataAmount
+        public int bytes;
+    }
+
+    /**
+     * 攻击数据解码事件
+     */
+    @Name("mcevent.musicdodge.Decode")
+    @Label("MusicDodge Decode")
+    @Category({"Lilacxesium", "MusicDodge"})
+    @Description("将攻击数据解码为AttackData列表")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class DecodeEvent extends Event {
+        @Label("Payload Size")
+        @DataAmount
+        public int bytes;
+
+        @Label("Attack Count")
+        public int attackCount;
+    }
+
+    /**
+     * 攻击快照替换事件
+     */
+    @Name("mcevent.musicdodge.SnapshotSwap")
+    @Label("MusicDodge Snapshot Swap")
+    @Category({"Lilacxesium", "MusicDodge"})
+    @Description("MusicDodgeClientManager替换当前攻击列表")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class SnapshotSwapEvent extends Event {
+        @Label("Previous Attack Count")
+        public int previousAttackCount;
+
+        @Label("Attack Count")
+        public int attackCount;
+
+        @Label("Alert Count")
+        public int alertCount;
+    }
+
+    /**
+     * 攻击粒子渲染事件
+     */
+    @Name("mcevent.musicdodge.RenderAttacks")
+    @Label("MusicDodge Render Attacks")
+    @Category({"Lilacxesium", "MusicDodge"})
+    @Description("ParticleRenderer.renderAttacks的一次调用")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class RenderAttacksEvent extends Event {
+        @Label("Attack Count")
+        public int attackCount;
+
+        @Label("Particles Emitted")
+        public int particlesEmitted;
+
+        @Label("Particles Culled")
+        public int particlesCulled;
+
+        @Label("Solidity Lookups")
+        public int solidityLookups;
+
+        @Label("Particles Deduplicated")
+        @Description("与本tick已生成的粒子落在同一子格而被跳过的粒子数")
+        public int particlesDeduplicated;
+    }
+
+    /**
+     * 如果启用了-Dmusicdodge.jfr，则使用默认配置加上musicdodge.jfc开始录制
+     */
+    public static synchronized void startRecordingIfConfigured(Path runDirectory) {
+        if (recording != null || !ClientConfig.getInstance().isJfrRecording()) {
+            return;
+        }
+
+        try {
+            Map<String, String> settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+            settings.putAll(loadSettings().getSettings());
+
+            String fileName = "musicdodge-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".jfr";
+            Path destination = runDirectory.resolve(fileName);
+
+            recording = new Recording(settings);
+            recording.setName("MusicDodge");
+            recording.setToDisk(true);
+            recording.setDestination(destination);
+            recording.start();
+
+            LOGGER.info("JFR recording started, will be written to {}", destination);
+        } catch (Exception e) {
+            LOGGER.error("Failed to start JFR recording: {}", e.getMessage(), e);
+            recording = null;
+        }
+    }
+
+    /**
+     * 停止录制并写入文件
+     */
+    public static synchronized void stopRecording() {
+        if (recording == null) {
+            return;
+        }
+
+        try {
+            recording.stop();
+            LOGGER.info("JFR recording written to {}", recording.getDestination());
+        } catch (Exception e) {
+            LOGGER.error("Failed to stop JFR recording: {}", e.getMessage(), e);
+        } finally {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    /**
+     * 读取随Mod附带的JFR配置
+     */
+    public static Configuration loadSettings() throws Exception {
+        try (InputStream in = MusicDodgeJfr.class.getResourceAsStream(SETTINGS_RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing JFR settings resource " + SETTINGS_RESOURCE);
+            }
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                return Configuration.create(reader);
+            }
+        }
+    }
+}
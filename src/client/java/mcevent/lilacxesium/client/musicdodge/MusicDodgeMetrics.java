@@ -0,0 +1,217 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 性能指标注册表
+ * 使用无锁计数器和滚动直方图记录接收、解码、渲染和粒子发射各阶段的开销，
+ * 供性能HUD实时显示
+ */
+public class MusicDodgeMetrics {
+
+    // 网络线程和客户端线程都会写入，立即创建，避免首次访问时的竞争
+    private static final MusicDodgeMetrics INSTANCE = new MusicDodgeMetrics();
+
+    // 滚动窗口大小（样本数，约为3秒的tick）
+    private static final int WINDOW_SIZE = 64;
+
+    // 网络
+    private final RateCounter packets = new RateCounter();
+    private final RateCounter payloadBytes = new RateCounter();
+    private final LongAdder coalescedPackets = new LongAdder();
+    private final LongAdder droppedPackets = new LongAdder();
+
+    // 各阶段耗时（微秒）
+    private final RollingHistogram decodeMicros = new RollingHistogram(WINDOW_SIZE);
+    private final RollingHistogram renderMicros = new RollingHistogram(WINDOW_SIZE);
+
+    // 每tick粒子数
+    private final RollingHistogram particlesEmitted = new RollingHistogram(WINDOW_SIZE);
+    private final RollingHistogram particlesCulled = new RollingHistogram(WINDOW_SIZE);
+
+    // 当前存活的攻击数
+    private final AtomicInteger attacksAlive = new AtomicInteger();
+
+    private MusicDodgeMetrics() {
+    }
+
+    public static MusicDodgeMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 记录一个收到的数据包
+     */
+    public void recordPacket(int bytes) {
+        packets.add(1);
+        payloadBytes.add(bytes);
+    }
+
+    /**
+     * 记录一个被更新快照覆盖、未解码的数据包
+     */
+    public void recordCoalescedPacket() {
+        coalescedPackets.increment();
+    }
+
+    /**
+     * 记录一个因邮箱已满被丢弃的数据包
+     */
+    public void recordDroppedPacket() {
+        droppedPackets.increment();
+    }
+
+    /**
+     * 记录一次解码耗时
+     */
+    public void recordDecode(long nanos) {
+        decodeMicros.record(nanos / 1000);
+    }
+
+    /**
+     * 记录一次渲染tick的耗时（几何解析、地形查询和粒子提交的整个渲染过程）和粒子数
+     */
+    public void recordRenderTick(long nanos, int emitted, int culled) {
+        renderMicros.record(nanos / 1000);
+        particlesEmitted.record(emitted);
+        particlesCulled.record(culled);
+    }
+
+    public void setAttacksAlive(int count) {
+        attacksAlive.set(count);
+    }
+
+    /**
+     * 清空所有指标
+     */
+    public void reset() {
+        packets.reset();
+        payloadBytes.reset();
+        coalescedPackets.reset();
+        droppedPackets.reset();
+        decodeMicros.reset();
+        renderMicros.reset();
+        particlesEmitted.reset();
+        particlesCulled.reset();
+        attacksAlive.set(0);
+    }
+
+    // Getter方法
+    public RateCounter getPackets() { return packets; }
+    public RateCounter getPayloadBytes() { return payloadBytes; }
+    public long getCoalescedPackets() { return coalescedPackets.sum(); }
+    public long getDroppedPackets() { return droppedPackets.sum(); }
+    public RollingHistogram getDecodeMicros() { return decodeMicros; }
+    public RollingHistogram getRenderMicros() { return renderMicros; }
+    public RollingHistogram getParticlesEmitted() { return particlesEmitted; }
+    public RollingHistogram getParticlesCulled() { return particlesCulled; }
+    public int getAttacksAlive() { return attacksAlive.get(); }
+
+    /**
+     * 速率计数器 - 写入端无锁，读取端每秒最多重新计算一次速率
+     */
+    public static class RateCounter {
+        private final LongAdder total = new LongAdder();
+        private volatile long lastTotal = 0;
+        private volatile long lastNanos = System.nanoTime();
+        private volatile double rate = 0;
+
+        public void add(long amount) {
+            total.add(amount);
+        }
+
+        public long getTotal() {
+            return total.sum();
+        }
+
+        /**
+         * 获取每秒速率（只应由单个读取线程调用，例如HUD渲染线程）
+         */
+        public double getRatePerSecond() {
+            long now = System.nanoTime();
+            long elapsed = now - lastNanos;
+            if (elapsed >= 1_000_000_000L) {
+                long current = total.sum();
+                rate = (current - lastTotal) * 1_000_000_000.0 / elapsed;
+                lastTotal = current;
+                lastNanos = now;
+            }
+            return rate;
+        }
+
+        public void reset() {
+            total.reset();
+            lastTotal = 0;
+            lastNanos = System.nanoTime();
+            rate = 0;
+        }
+    }
+
+    /**
+     * 滚动直方图 - 保留最近N个样本的环形缓冲区
+     * 写入端只做一次原子自增和一次原子写入，统计在读取时计算
+     */
+    public static class RollingHistogram {
+        private final AtomicLongArray samples;
+        private final AtomicLong cursor = new AtomicLong();
+
+        // 读取端复用的排序缓冲区
+        private final long[] scratch;
+
+        public RollingHistogram(int size) {
+            this.samples = new AtomicLongArray(size);
+            this.scratch = new long[size];
+        }
+
+        public void record(long value) {
+            long index = cursor.getAndIncrement();
+            samples.set((int) (index % samples.length()), value);
+        }
+
+        /**
+         * 最近一次记录的值
+         */
+        public long getLast() {
+            long index = cursor.get();
+            return index == 0 ? 0 : samples.get((int) ((index - 1) % samples.length()));
+        }
+
+        /**
+         * 计算窗口内的统计信息（只应由单个读取线程调用）
+         */
+        public Stats getStats() {
+            int count = (int) Math.min(cursor.get(), samples.length());
+            if (count == 0) {
+                return Stats.EMPTY;
+            }
+
+            long sum = 0;
+            for (int i = 0; i < count; i++) {
+                scratch[i] = samples.get(i);
+                sum += scratch[i];
+            }
+            Arrays.sort(scratch, 0, count);
+
+            long p95 = scratch[Math.min(count - 1, (int) Math.ceil(count * 0.95) - 1)];
+            return new Stats((double) sum / count, p95, scratch[count - 1]);
+        }
+
+        public void reset() {
+            for (int i = 0; i < samples.length(); i++) {
+                samples.set(i, 0);
+            }
+            cursor.set(0);
+        }
+    }
+
+    /**
+     * 直方图统计结果
+     */
+    public record Stats(double average, long p95, long max) {
+        public static final Stats EMPTY = new Stats(0, 0, 0);
+    }
+}
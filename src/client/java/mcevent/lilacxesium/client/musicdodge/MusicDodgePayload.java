@@ -1,5 +1,6 @@
 package mcevent.lilacxesium.client.musicdodge;
 
+import io.netty.handler.codec.DecoderException;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.network.codec.PacketCodec;
 import net.minecraft.network.packet.CustomPayload;
@@ -9,34 +10,66 @@ import java.nio.charset.StandardCharsets;
 
 /**
  * MusicDodge自定义Payload - 1.21.4版本
+ * 线上格式与PacketByteBuf.writeString相同（VarInt长度 + UTF-8字节），
+ * 但读取时只复制原始字节，不解码为String，攻击数据由AttackDataDecoder直接从字节解析
  */
-public record MusicDodgePayload(String data) implements CustomPayload {
-    
+public record MusicDodgePayload(byte[] data) implements CustomPayload {
+
     public static final Identifier ID = Identifier.of("mce", "musicdodge");
     public static final CustomPayload.Id<MusicDodgePayload> TYPE = new CustomPayload.Id<>(ID);
-    
+
+    // 与readString默认的最大长度（32767个字符）对应的最大字节数
+    private static final int MAX_BYTES = 32767 * 3;
+
     public static final PacketCodec<PacketByteBuf, MusicDodgePayload> CODEC = PacketCodec.of(
         MusicDodgePayload::write,
         MusicDodgePayload::read
     );
-    
+
+    /**
+     * 由文本创建Payload（用于发送）
+     */
+    public static MusicDodgePayload of(String text) {
+        return new MusicDodgePayload(text.getBytes(StandardCharsets.UTF_8));
+    }
+
     /**
      * 写入数据到缓冲区
      */
     public void write(PacketByteBuf buf) {
-        buf.writeString(this.data);
+        buf.writeVarInt(this.data.length);
+        buf.writeBytes(this.data);
     }
-    
+
     /**
      * 从缓冲区读取数据
      */
     public static MusicDodgePayload read(PacketByteBuf buf) {
-        String data = buf.readString();
+        int length = buf.readVarInt();
+        if (length < 0 || length > MAX_BYTES || length > buf.readableBytes()) {
+            throw new DecoderException("Invalid MusicDodge payload length: " + length);
+        }
+        byte[] data = new byte[length];
+        buf.readBytes(data);
         return new MusicDodgePayload(data);
     }
-    
+
+    /**
+     * 数据包是否为控制消息（以"!"开头）
+     */
+    public boolean isControlMessage() {
+        return data.length > 0 && data[0] == SongPlayback.CONTROL_PREFIX;
+    }
+
+    /**
+     * 解码为文本（只用于控制消息和日志）
+     */
+    public String text() {
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
     @Override
     public CustomPayload.Id<? extends CustomPayload> getId() {
         return TYPE;
     }
-}
\ No newline at end of file
+}
@@ -6,8 +6,8 @@ import net.minecraft.util.Identifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.function.Consumer;
 
 /**
  * 网络处理器 - 负责接收和处理来自服务器的Plugin Message
@@ -17,9 +17,28 @@ public class NetworkHandler {
     
     private static final Logger LOGGER = LoggerFactory.getLogger("NetworkHandler");
     
-    private Consumer<List<AttackDataDecoder.AttackData>> attackDataHandler;
+    private final PayloadMailbox mailbox = new PayloadMailbox();
+    private final List<PayloadMailbox.PendingSnapshot> pendingSnapshots = new ArrayList<>();
+    private SnapshotHandler attackDataHandler;
+    private ControlMessageHandler controlMessageHandler;
     private boolean isRegistered = false;
     
+    /**
+     * 攻击快照处理器
+     */
+    @FunctionalInterface
+    public interface SnapshotHandler {
+        void handle(AttackDataDecoder.Snapshot snapshot, long receivedAtMillis);
+    }
+    
+    /**
+     * 控制消息处理器
+     */
+    @FunctionalInterface
+    public interface ControlMessageHandler {
+        void handle(String message, long receivedAtMillis);
+    }
+    
     /**
      * 注册网络处理器
      */
@@ -31,16 +50,22 @@ public class NetworkHandler {
         try {
             // 注册CustomPayload接收器
             ClientPlayNetworking.registerGlobalReceiver(MusicDodgePayload.TYPE, (payload, context) -> {
-                // 获取攻击数据
-                String encodedData = payload.data();
+                MusicDodgeJfr.PayloadReceiveEvent receiveEvent = new MusicDodgeJfr.PayloadReceiveEvent();
+                receiveEvent.begin();
                 
-                // 立即处理数据，减少延迟
+                // 只放入邮箱，解码推迟到客户端tick
                 try {
-                    handleAttackData(encodedData);
+                    receivePayload(payload);
                 } catch (Exception e) {
                     LOGGER.error("Failed to process attack data: {}", e.getMessage(), e);
                     e.printStackTrace();
                 }
+                
+                receiveEvent.end();
+                if (receiveEvent.shouldCommit()) {
+                    receiveEvent.bytes = payload.data().length;
+                    receiveEvent.commit();
+                }
             });
             
             isRegistered = true;
@@ -60,30 +85,109 @@ public class NetworkHandler {
         }
         
         ClientPlayNetworking.unregisterGlobalReceiver(MusicDodgePayload.ID);
+        mailbox.clear();
         isRegistered = false;
     }
     
     /**
      * 设置攻击数据处理器
      */
-    public void setAttackDataHandler(Consumer<List<AttackDataDecoder.AttackData>> handler) {
+    public void setAttackDataHandler(SnapshotHandler handler) {
         this.attackDataHandler = handler;
     }
     
     /**
-     * 处理接收到的攻击数据
+     * 设置控制消息处理器（谱面预加载和播放控制）
      */
-    private void handleAttackData(String encodedData) {
-        if (attackDataHandler == null) {
+    public void setControlMessageHandler(ControlMessageHandler handler) {
+        this.controlMessageHandler = handler;
+    }
+    
+    /**
+     * 接收一个数据包并放入邮箱
+     */
+    private void receivePayload(MusicDodgePayload payload) {
+        byte[] data = payload.data();
+        MusicDodgeMetrics.getInstance().recordPacket(data.length);
+        
+        if (ClientConfig.getInstance().isLogNetworkData()) {
+            LOGGER.info("Received payload ({} bytes): {}", data.length, payload.text());
+        }
+        
+        // 控制消息必须按顺序全部处理，攻击快照每个场地只需要最新的一个
+        // 攻击快照保持原始字节，在客户端tick中直接从字节解码
+        if (payload.isControlMessage()) {
+            mailbox.offerControlMessage(payload.text(), ServerClock.localMillis());
+        } else {
+            mailbox.offerSnapshot(AttackDataDecoder.peekArenaId(data), data, ServerClock.localMillis());
+        }
+    }
+    
+    /**
+     * 是否有尚未处理的控制消息
+     */
+    public boolean hasControlMessages() {
+        return mailbox.hasControlMessages();
+    }
+    
+    /**
+     * 按顺序处理邮箱中的全部控制消息（在MusicDodge世界中、有歌曲或有待处理的控制消息时调用）
+     */
+    public void processControlMessages() {
+        PayloadMailbox.PendingControl pending;
+        while ((pending = mailbox.pollControlMessage()) != null) {
+            if (controlMessageHandler != null) {
+                controlMessageHandler.handle(pending.message(), pending.receivedAtMillis());
+            }
+        }
+    }
+    
+    /**
+     * 解码每个场地最新的攻击快照（在MusicDodge世界中的客户端tick中调用）
+     */
+    public void processSnapshots() {
+        if (!mailbox.hasSnapshots()) {
             return;
         }
         
+        mailbox.drainSnapshots(pendingSnapshots);
+        if (attackDataHandler != null) {
+            for (PayloadMailbox.PendingSnapshot pending : pendingSnapshots) {
+                handleAttackData(pending.data(), pending.receivedAtMillis());
+            }
+        }
+        pendingSnapshots.clear();
+    }
+    
+    /**
+     * 清空尚未处理的数据包（断开连接时调用）
+     */
+    public void clearPending() {
+        mailbox.clear();
+    }
+    
+    /**
+     * 解码并处理攻击数据
+     */
+    private void handleAttackData(byte[] encodedData, long receivedAtMillis) {
+        MusicDodgeMetrics metrics = MusicDodgeMetrics.getInstance();
+        
         try {
             // 解码攻击数据
-            List<AttackDataDecoder.AttackData> attacks = AttackDataDecoder.decode(encodedData);
+            MusicDodgeJfr.DecodeEvent decodeEvent = new MusicDodgeJfr.DecodeEvent();
+            decodeEvent.begin();
+            long decodeStart = System.nanoTime();
+            AttackDataDecoder.Snapshot snapshot = AttackDataDecoder.decodeSnapshot(encodedData);
+            metrics.recordDecode(System.nanoTime() - decodeStart);
+            decodeEvent.end();
+            if (decodeEvent.shouldCommit()) {
+                decodeEvent.bytes = encodedData.length;
+                decodeEvent.attackCount = snapshot.attacks.size();
+                decodeEvent.commit();
+            }
             
             // 调用处理器
-            attackDataHandler.accept(attacks);
+            attackDataHandler.handle(snapshot, receivedAtMillis);
             
         } catch (Exception e) {
             LOGGER.error("Failed to handle attack data: {}", e.getMessage(), e);
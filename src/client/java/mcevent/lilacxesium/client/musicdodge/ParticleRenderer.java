@@ -8,7 +8,7 @@ import org.joml.Vector3f;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
+import java.nio.FloatBuffer;
 import java.util.List;
 
 /**
@@ -18,25 +18,228 @@ public class ParticleRenderer {
     
     private static final Logger LOGGER = LoggerFactory.getLogger("ParticleRenderer");
     
+    // 有其他场地需要显示时，为它们保留的粒子预算比例
+    private static final double BACKGROUND_BUDGET_SHARE = 0.25;
+    
+    // 每小节的tick数，预警阶段每小节脉冲ALERT_PULSES_PER_BEAT次
+    private static final int TICKS_PER_BEAT = 20;
+    private static final int ALERT_PULSES_PER_BEAT = 2;
+    private static final int ALERT_PULSE_TICKS = TICKS_PER_BEAT / ALERT_PULSES_PER_BEAT;
+    
+    // 预警指纹没有记录时的返回值
+    private static final long NO_ALERT = Long.MIN_VALUE;
+    
+    // 去重网格：每格划分的子格数（0.25格）
+    private static final double DEDUP_CELLS_PER_BLOCK = 4.0;
+    private static final long DEDUP_AXIS_MASK = (1L << 21) - 1;
+    
+    // 原版丢弃离摄像机超过32格的非强制粒子，超出的点不提交，也不计入发射数和预算
+    private static final double VANILLA_PARTICLE_RANGE = 32.0;
+    private static final double VANILLA_PARTICLE_RANGE_SQ = VANILLA_PARTICLE_RANGE * VANILLA_PARTICLE_RANGE;
+    
+    // 粒子效果（不可变，复用）
+    // 灰色 - RGB (0.5, 0.5, 0.5)
+    private static final DustParticleEffect ALERT_EFFECT = new DustParticleEffect(0x808080, 1.0f);
+    // 脉冲模式下的预警粒子更大、存活更久，覆盖两次脉冲之间的间隔
+    private static final DustParticleEffect ALERT_PULSE_EFFECT = new DustParticleEffect(0x808080, 1.5f);
+    // 红色 - RGB (1.0, 0.0, 0.0)
+    private static final DustParticleEffect ATTACK_EFFECT = new DustParticleEffect(0xFF0000, 1.0f);
+    
     private final MinecraftClient client;
+    private final QualityGovernor governor;
+    private final SongPlayback songPlayback;
+    private final WorldSolidity solidity = new WorldSolidity();
+    
+    // 计入本tick地形查询次数的固体判定（截断旋转射线时使用）
+    private final SolidityLookup countedSolidity = this::isPositionSolid;
+    private final GeometryBuilder geometryBuilder;
+    
+    // 几何内核输出的x/z偏移（复用，按需扩容）
+    private double[] offsetsX = new double[256];
+    private double[] offsetsZ = new double[256];
+    
+    // 本tick的画质参数（由QualityGovernor决定）
+    private int stride = 1;
+    private int particleBudget = Integer.MAX_VALUE;
     
-    public ParticleRenderer() {
+    // 正在渲染焦点场地的攻击阶段：玩家需要看清并躲避，只受点间隔影响，不受粒子预算限制
+    private boolean budgetExempt = false;
+    
+    // 预警脉冲：播放预加载谱面时按歌曲tick对齐小节；实时攻击按各自的剩余tick对齐（攻击在小节线上开始）
+    private boolean alertPulseMode = false;
+    private boolean songPulse = false;
+    private boolean songPulseTick = true;
+    private long lastPulseIndex = Long.MIN_VALUE;
+    private long renderTick = 0;
+    
+    // 上一tick和本tick绘制过的预警：指纹 -> 预警结束时的本地渲染tick
+    private LongLongHashMap previousAlerts = new LongLongHashMap(64);
+    private LongLongHashMap currentAlerts = new LongLongHashMap(64);
+    
+    // 本tick已经生成过粒子的子格（先渲染攻击阶段，所以红色优先占据格子）
+    private final LongHashSet occupiedCells = new LongHashSet(1024);
+    private boolean dedupEnabled = true;
+    
+    // 本tick的摄像机位置（粒子距离裁剪）
+    private double cameraX;
+    private double cameraY;
+    private double cameraZ;
+    
+    // 本tick的粒子统计
+    private int emittedThisTick = 0;
+    private int culledThisTick = 0;
+    private int solidityLookupsThisTick = 0;
+    private int dedupedThisTick = 0;
+    
+    public ParticleRenderer(QualityGovernor governor, SongPlayback songPlayback, GeometryArena geometryArena) {
         this.client = MinecraftClient.getInstance();
+        this.governor = governor;
+        this.songPlayback = songPlayback;
+        this.geometryBuilder = new GeometryBuilder(geometryArena);
     }
     
     /**
      * 渲染攻击数据列表
      */
     public void renderAttacks(List<AttackDataDecoder.AttackData> attacks) {
+        renderAttacks(attacks, List.of());
+    }
+    
+    /**
+     * 渲染焦点场地和其他场地的攻击
+     * 焦点场地的攻击阶段总是完整渲染；预警阶段和其他场地共享粒子预算，其他场地平分剩余预算并使用更低的密度，
+     * 因此总粒子数不会随显示的场地数线性增长
+     */
+    public void renderAttacks(List<AttackDataDecoder.AttackData> attacks,
+                              List<List<AttackDataDecoder.AttackData>> backgroundArenas) {
         ClientWorld world = client.world;
         if (world == null) {
             LOGGER.warn("ParticleRenderer: World is null, cannot render");
             return;
         }
         
+        MusicDodgeJfr.RenderAttacksEvent renderEvent = new MusicDodgeJfr.RenderAttacksEvent();
+        renderEvent.begin();
+        long start = System.nanoTime();
+        emittedThisTick = 0;
+        culledThisTick = 0;
+        solidityLookupsThisTick = 0;
+        dedupedThisTick = 0;
+        occupiedCells.clear();
+        solidity.setWorld(world);
+        Vec3d cameraPos = client.gameRenderer.getCamera().getPos();
+        cameraX = cameraPos.x;
+        cameraY = cameraPos.y;
+        cameraZ = cameraPos.z;
+        updateQualitySettings();
+        
+        int totalBudget = particleBudget;
+        int attackCount = attacks.size();
+        if (!backgroundArenas.isEmpty()) {
+            particleBudget = (int) (totalBudget * (1.0 - BACKGROUND_BUDGET_SHARE));
+        }
+        renderArena(attacks, world, true);
+        
+        if (!backgroundArenas.isEmpty()) {
+            // 其他场地只是观战画面，粒子间隔加倍
+            int focusedStride = stride;
+            stride = focusedStride * 2;
+            for (int i = 0; i < backgroundArenas.size(); i++) {
+                List<AttackDataDecoder.AttackData> arena = backgroundArenas.get(i);
+                int remaining = Math.max(0, totalBudget - emittedThisTick);
+                particleBudget = emittedThisTick + remaining / (backgroundArenas.size() - i);
+                renderArena(arena, world, false);
+                attackCount += arena.size();
+            }
+            stride = focusedStride;
+            particleBudget = totalBudget;
+        }
+        
+        // 本tick没有出现的预警不再记为已绘制
+        LongLongHashMap swap = previousAlerts;
+        previousAlerts = currentAlerts;
+        currentAlerts = swap;
+        currentAlerts.clear();
+        
+        MusicDodgeMetrics.getInstance().recordRenderTick(System.nanoTime() - start, emittedThisTick, culledThisTick);
+        renderEvent.end();
+        if (renderEvent.shouldCommit()) {
+            renderEvent.attackCount = attackCount;
+            renderEvent.particlesEmitted = emittedThisTick;
+            renderEvent.particlesCulled = culledThisTick;
+            renderEvent.solidityLookups = solidityLookupsThisTick;
+            renderEvent.particlesDeduplicated = dedupedThisTick;
+            renderEvent.commit();
+        }
+    }
+    
+    /**
+     * 渲染一个场地的攻击
+     * 先渲染攻击阶段再渲染预警阶段，预算不足时优先保证红色攻击可见
+     * @param focused 是否为焦点场地（玩家所在的场地，攻击阶段不受粒子预算限制）
+     */
+    private void renderArena(List<AttackDataDecoder.AttackData> attacks, ClientWorld world, boolean focused) {
+        budgetExempt = focused;
         for (AttackDataDecoder.AttackData attack : attacks) {
-            renderAttack(attack, world);
+            if (attack.phase == AttackDataDecoder.AttackPhase.ATTACK) {
+                renderAttack(attack, world);
+            }
         }
+        budgetExempt = false;
+        for (AttackDataDecoder.AttackData attack : attacks) {
+            if (attack.phase == AttackDataDecoder.AttackPhase.ALERT) {
+                renderAlert(attack, world);
+            }
+        }
+    }
+    
+    /**
+     * 渲染预警阶段
+     * 脉冲模式下预警只在与小节对齐的脉冲tick绘制，两次脉冲之间由存活更久的粒子保持可见；
+     * 新出现的预警立即绘制一次，不等待下一个脉冲
+     *
+     * 播放预加载谱面时脉冲来自歌曲tick；实时攻击没有歌曲tick，但预警在小节线上结束，
+     * 因此按第一次出现时的剩余tick推算结束tick，距结束为半小节整数倍时脉冲
+     */
+    private void renderAlert(AttackDataDecoder.AttackData attack, ClientWorld world) {
+        if (!alertPulseMode) {
+            renderAttack(attack, world, ALERT_EFFECT);
+            return;
+        }
+        
+        long fingerprint = attack.parameters.fingerprint();
+        long endTick = previousAlerts.get(fingerprint, NO_ALERT);
+        boolean isNew = endTick == NO_ALERT;
+        if (isNew) {
+            endTick = renderTick + attack.ticksRemaining;
+        }
+        currentAlerts.put(fingerprint, endTick);
+        
+        boolean pulse = songPulse
+            ? songPulseTick
+            : Math.floorMod(endTick - renderTick, ALERT_PULSE_TICKS) == 0;
+        if (pulse || isNew) {
+            renderAttack(attack, world, ALERT_PULSE_EFFECT);
+        }
+    }
+    
+    /**
+     * 读取本tick的画质参数
+     */
+    private void updateQualitySettings() {
+        alertPulseMode = ClientConfig.getInstance().isAlertPulse();
+        dedupEnabled = ClientConfig.getInstance().isEnableParticleOptimization();
+        renderTick++;
+        songPulse = songPlayback.isPlaying();
+        if (songPulse) {
+            // 歌曲tick可能在校正时一次前进0或2，按跨过的半小节判断而不是取模
+            long pulseIndex = Math.floorDiv(songPlayback.getSongTick(), ALERT_PULSE_TICKS);
+            songPulseTick = pulseIndex != lastPulseIndex;
+            lastPulseIndex = pulseIndex;
+        }
+        
+        stride = Math.max(1, (int) Math.round(1.0 / governor.getDensity()));
+        particleBudget = governor.getParticleBudget();
     }
     
     /**
@@ -44,7 +247,13 @@ public class ParticleRenderer {
      */
     private void renderAttack(AttackDataDecoder.AttackData attack, ClientWorld world) {
         // 根据攻击相位确定粒子效果
-        DustParticleEffect particleEffect = getParticleEffect(attack.phase);
+        renderAttack(attack, world, getParticleEffect(attack.phase));
+    }
+    
+    /**
+     * 用指定的粒子效果渲染单个攻击
+     */
+    private void renderAttack(AttackDataDecoder.AttackData attack, ClientWorld world, DustParticleEffect particleEffect) {
         
         // 根据攻击类型渲染粒子
         switch (attack.type) {
@@ -63,6 +272,9 @@ public class ParticleRenderer {
             case WALL:
                 renderWall((AttackDataDecoder.WallParameters) attack.parameters, world, particleEffect);
                 break;
+            case SHAPE:
+                renderShape((AttackDataDecoder.ShapeParameters) attack.parameters, world, particleEffect);
+                break;
         }
     }
     
@@ -71,38 +283,35 @@ public class ParticleRenderer {
      */
     private DustParticleEffect getParticleEffect(AttackDataDecoder.AttackPhase phase) {
         return switch (phase) {
-            case ALERT ->
-                // 灰色 - RGB (0.5, 0.5, 0.5)
-                    new DustParticleEffect(0x808080, 1.0f);
-            case ATTACK ->
-                // 红色 - RGB (1.0, 0.0, 0.0)
-                    new DustParticleEffect(0xFF0000, 1.0f);
+            case ALERT -> ALERT_EFFECT;
+            case ATTACK -> ATTACK_EFFECT;
         };
     }
     
     /**
      * 渲染激光攻击
+     * 几何中只保存光束底部的点，逐点检查固体方块后向上生成2格高的光束
      */
     private void renderLaser(AttackDataDecoder.LaserParameters params, ClientWorld world, DustParticleEffect particleEffect) {
-        Vec3d start = new Vec3d(params.x1, params.y1, params.z1);
-        Vec3d end = new Vec3d(params.x2, params.y2, params.z2);
-        
-        Vec3d direction = end.subtract(start);
-        double distance = direction.length();
-        direction = direction.normalize();
+        geometryBuilder.resolve(params);
+        FloatBuffer slab = geometryBuilder.getSlab();
+        int offset = geometryBuilder.getPointsOffset();
+        int count = geometryBuilder.getCount();
         
-        double step = 0.5; // 每0.5格一个粒子
-        
-        for (double d = 0; d < distance; d += step) {
-            Vec3d currentPos = start.add(direction.multiply(d));
+        for (int i = 0; i < count; i += stride) {
+            int base = offset + i * 3;
+            double x = slab.get(base);
+            double y = slab.get(base + 1);
+            double z = slab.get(base + 2);
             
             // 检查是否在固体方块内
-            if (!isPositionSolid(world, currentPos)) {
+            if (!isPositionSolid(x, y, z)) {
                 // 生成2格高的激光
-                for (int y = 0; y < 2; y++) {
-                    Vec3d particlePos = currentPos.add(0, y, 0);
-                    spawnParticle(world, particlePos, particleEffect);
+                for (int h = 0; h < AttackGeometry.BEAM_HEIGHT; h++) {
+                    spawnParticle(world, x, y + h, z, particleEffect);
                 }
+            } else {
+                culledThisTick += AttackGeometry.BEAM_HEIGHT;
             }
         }
     }
@@ -111,74 +320,46 @@ public class ParticleRenderer {
      * 渲染正方形环攻击
      */
     private void renderSquareRing(AttackDataDecoder.SquareRingParameters params, ClientWorld world, DustParticleEffect particleEffect) {
-        Vec3d center = new Vec3d(params.centerX, params.centerY, params.centerZ);
-        
-        // 渲染从内半径到外半径的所有环
-        for (int radius = params.innerRadius; radius <= params.outerRadius; radius++) {
-            renderSquareBorder(world, center, radius, particleEffect);
-        }
-    }
-    
-    /**
-     * 渲染正方形边框
-     */
-    private void renderSquareBorder(ClientWorld world, Vec3d center, int radius, DustParticleEffect particleEffect) {
-        // 上边
-        for (int x = -radius; x <= radius; x++) {
-            Vec3d pos = center.add(x, 0, -radius);
-            spawnParticleIfNotSolid(world, pos, particleEffect);
-        }
-        
-        // 下边
-        for (int x = -radius; x <= radius; x++) {
-            Vec3d pos = center.add(x, 0, radius);
-            spawnParticleIfNotSolid(world, pos, particleEffect);
-        }
-        
-        // 左边（排除角落）
-        for (int z = -radius + 1; z < radius; z++) {
-            Vec3d pos = center.add(-radius, 0, z);
-            spawnParticleIfNotSolid(world, pos, particleEffect);
-        }
-        
-        // 右边（排除角落）
-        for (int z = -radius + 1; z < radius; z++) {
-            Vec3d pos = center.add(radius, 0, z);
-            spawnParticleIfNotSolid(world, pos, particleEffect);
-        }
+        geometryBuilder.resolve(params);
+        renderGeometry(world, particleEffect);
     }
     
     /**
      * 渲染旋转攻击
+     * 射线先按每个整数距离检查地形截断（与HitTester使用同一个函数），粒子间隔只决定截断前在哪些距离绘制，
+     * 因此降低画质时射线也不会穿过奇数距离上的一格墙；绘制的点由几何内核批量计算
      */
     private void renderSpin(AttackDataDecoder.SpinParameters params, ClientWorld world, DustParticleEffect particleEffect) {
-        Vec3d center = new Vec3d(params.centerX, params.centerY, params.centerZ);
-        double angleStep = 360.0 / params.rayCount;
+        if (params.rayCount <= 0 || params.maxDistance <= 0) {
+            return;
+        }
         
-        for (int i = 0; i < params.rayCount; i++) {
-            double angle = Math.toRadians(params.angleOffset + (i * angleStep));
-            renderSpinRay(world, center, angle, params.maxDistance, particleEffect);
+        int pointsPerRay = AttackGeometry.spinRayPoints(params.maxDistance, stride);
+        ensureCapacity(pointsPerRay);
+        for (int ray = 0; ray < params.rayCount; ray++) {
+            double angle = AttackGeometry.spinRayRadians(params, ray);
+            double dirX = Math.cos(angle);
+            double dirZ = Math.sin(angle);
+            int reach = AttackGeometry.spinRayReach(params, dirX, dirZ, params.maxDistance, countedSolidity);
+            int points = AttackGeometry.spinRayPoints(reach, stride);
+            GeometryKernel.ray(dirX, dirZ, points, stride, offsetsX, offsetsZ, 0);
+            renderSpinRay(world, params, points, particleEffect);
+            culledThisTick += AttackGeometry.BEAM_HEIGHT * (pointsPerRay - points);
         }
     }
     
     /**
-     * 渲染旋转攻击的单条射线
+     * 渲染旋转攻击的单条射线（截断前的点，地形已检查过）
      */
-    private void renderSpinRay(ClientWorld world, Vec3d center, double angle, int maxDistance, DustParticleEffect particleEffect) {
-        Vec3d direction = new Vec3d(Math.cos(angle), 0, Math.sin(angle));
-        
-        for (int distance = 0; distance < maxDistance; distance++) {
-            Vec3d currentPos = center.add(direction.multiply(distance));
-            
-            // 检查是否碰到固体方块
-            if (isPositionSolid(world, currentPos)) {
-                break;
-            }
+    private void renderSpinRay(ClientWorld world, AttackDataDecoder.SpinParameters params, int points,
+                               DustParticleEffect particleEffect) {
+        for (int i = 0; i < points; i++) {
+            double x = params.centerX + offsetsX[i];
+            double z = params.centerZ + offsetsZ[i];
             
             // 生成2格高的射线
-            for (int y = 0; y < 2; y++) {
-                Vec3d particlePos = currentPos.add(0, y, 0);
-                spawnParticle(world, particlePos, particleEffect);
+            for (int y = 0; y < AttackGeometry.BEAM_HEIGHT; y++) {
+                spawnParticle(world, x, params.centerY + y, z, particleEffect);
             }
         }
     }
@@ -187,18 +368,27 @@ public class ParticleRenderer {
      * 渲染圆形攻击
      */
     private void renderCircle(AttackDataDecoder.CircleParameters params, ClientWorld world, DustParticleEffect particleEffect) {
-        Vec3d center = new Vec3d(params.centerX, params.centerY, params.centerZ);
-        
-        // 根据半径确定圆周上的点数
-        int points = Math.max(16, (int)(params.radius * 16));
-        
-        for (int i = 0; i < points; i++) {
-            double angle = 2 * Math.PI * i / points;
-            double x = center.x + params.radius * Math.cos(angle);
-            double z = center.z + params.radius * Math.sin(angle);
-            
-            Vec3d pos = new Vec3d(x, center.y, z);
-            spawnParticleIfNotSolid(world, pos, particleEffect);
+        geometryBuilder.resolve(params);
+        renderGeometry(world, particleEffect);
+    }
+    
+    /**
+     * 渲染形状攻击
+     * 形状几何由形状程序批量求值，加上原点后和其他攻击一样写入几何内存区
+     */
+    private void renderShape(AttackDataDecoder.ShapeParameters params, ClientWorld world, DustParticleEffect particleEffect) {
+        geometryBuilder.resolve(params);
+        renderGeometry(world, particleEffect);
+    }
+    
+    /**
+     * 确保几何缓冲区足够大
+     */
+    private void ensureCapacity(int points) {
+        if (offsetsX.length < points) {
+            int capacity = Math.max(points, offsetsX.length * 2);
+            offsetsX = new double[capacity];
+            offsetsZ = new double[capacity];
         }
     }
     
@@ -206,66 +396,124 @@ public class ParticleRenderer {
      * 渲染墙攻击
      */
     private void renderWall(AttackDataDecoder.WallParameters params, ClientWorld world, DustParticleEffect particleEffect) {
-        // MusicDodge场地范围
-        final int FIELD_MIN_X = -7;
-        final int FIELD_MAX_X = 35;
-        final int FIELD_MIN_Z = -46;
-        final int FIELD_MAX_Z = -4;
-        final int FIELD_Y = -60;
-        final int WALL_HEIGHT = 6; // 墙高度设为6格
-        
-        
-        if (params.direction.equals("x")) {
-            // 垂直于X轴的墙（从上到下）
-            // 将游戏坐标转换为世界坐标
-            double worldX = FIELD_MIN_X + params.position;
-            for (int z = FIELD_MIN_Z; z <= FIELD_MAX_Z; z++) {
-                for (int y = 0; y < WALL_HEIGHT; y++) {
-                    Vec3d pos = new Vec3d(worldX, FIELD_Y + y, z);
-                    spawnParticleIfNotSolid(world, pos, particleEffect);
-                }
+        geometryBuilder.resolve(params);
+        renderGeometry(world, particleEffect);
+    }
+    
+    /**
+     * 按当前间隔渲染当前几何中的点（直接读取分片，不复制）
+     * 有列结构的几何（墙、形状）按列间隔跳过，保留的列绘制全部层，避免跳过同一列中的部分层
+     */
+    private void renderGeometry(ClientWorld world, DustParticleEffect particleEffect) {
+        FloatBuffer slab = geometryBuilder.getSlab();
+        int offset = geometryBuilder.getPointsOffset();
+        int columnCount = geometryBuilder.getColumnCount();
+        if (columnCount == 0) {
+            int count = geometryBuilder.getCount();
+            for (int i = 0; i < count; i += stride) {
+                renderGeometryPoint(world, slab, offset + i * 3, particleEffect);
             }
-        } else if (params.direction.equals("y") || params.direction.equals("z")) {
-            // 垂直于Z轴的墙（从左到右）
-            // 将游戏坐标转换为世界坐标
-            double worldZ = FIELD_MIN_Z + params.position;
-            for (int x = FIELD_MIN_X; x <= FIELD_MAX_X; x++) {
-                for (int y = 0; y < WALL_HEIGHT; y++) {
-                    Vec3d pos = new Vec3d(x, FIELD_Y + y, worldZ);
-                    spawnParticleIfNotSolid(world, pos, particleEffect);
-                }
+            return;
+        }
+        
+        for (int column = 0; column < columnCount; column += stride) {
+            int end = geometryBuilder.getColumnStart(column + 1);
+            for (int i = geometryBuilder.getColumnStart(column); i < end; i++) {
+                renderGeometryPoint(world, slab, offset + i * 3, particleEffect);
             }
         }
     }
     
+    /**
+     * 渲染几何缓冲区中从base开始的一个点
+     */
+    private void renderGeometryPoint(ClientWorld world, FloatBuffer slab, int base, DustParticleEffect particleEffect) {
+        spawnParticleIfNotSolid(world, slab.get(base), slab.get(base + 1), slab.get(base + 2), particleEffect);
+    }
+    
     /**
      * 在非固体方块位置生成粒子
      */
-    private void spawnParticleIfNotSolid(ClientWorld world, Vec3d pos, DustParticleEffect particleEffect) {
-        if (!isPositionSolid(world, pos)) {
-            spawnParticle(world, pos, particleEffect);
+    private void spawnParticleIfNotSolid(ClientWorld world, double x, double y, double z, DustParticleEffect particleEffect) {
+        // 先按距离裁剪，超出粒子范围的点不需要查询地形
+        if (isOutOfParticleRange(x, y, z)) {
+            culledThisTick++;
+            return;
+        }
+        if (!isPositionSolid(x, y, z)) {
+            emitParticle(world, x, y, z, particleEffect);
+        } else {
+            culledThisTick++;
         }
     }
     
     /**
-     * 生成粒子
+     * 生成粒子（焦点场地的攻击阶段以外受粒子预算限制）
      */
-    private void spawnParticle(ClientWorld world, Vec3d pos, DustParticleEffect particleEffect) {
-        world.addParticle(particleEffect, pos.x, pos.y, pos.z, 0, 0, 0);
+    private void spawnParticle(ClientWorld world, double x, double y, double z, DustParticleEffect particleEffect) {
+        if (isOutOfParticleRange(x, y, z)) {
+            culledThisTick++;
+            return;
+        }
+        emitParticle(world, x, y, z, particleEffect);
     }
     
     /**
-     * 检查位置是否为固体方块
+     * 点是否超出原版的粒子范围 - 原版会静默丢弃这些粒子，计入发射数会让远处的其他场地白白占用预算
      */
-    private boolean isPositionSolid(ClientWorld world, Vec3d pos) {
-        try {
-            net.minecraft.util.math.BlockPos blockPos = new net.minecraft.util.math.BlockPos(
-                (int)Math.floor(pos.x), (int)Math.floor(pos.y), (int)Math.floor(pos.z)
-            );
-            // 使用新的API替代已弃用的isSolid()
-            return world.getBlockState(blockPos).isSolidBlock(world, blockPos);
-        } catch (Exception e) {
-            return true; // 安全起见，遇到错误时认为是固体
+    private boolean isOutOfParticleRange(double x, double y, double z) {
+        double dx = x - cameraX;
+        double dy = y - cameraY;
+        double dz = z - cameraZ;
+        return dx * dx + dy * dy + dz * dz > VANILLA_PARTICLE_RANGE_SQ;
+    }
+    
+    private void emitParticle(ClientWorld world, double x, double y, double z, DustParticleEffect particleEffect) {
+        // 重叠的攻击在同一子格只生成一个粒子
+        if (dedupEnabled && !occupiedCells.add(cellKey(x, y, z))) {
+            dedupedThisTick++;
+            culledThisTick++;
+            return;
+        }
+        
+        if (!budgetExempt && emittedThisTick >= particleBudget) {
+            culledThisTick++;
+            return;
         }
+        
+        world.addParticle(particleEffect, x, y, z, 0, 0, 0);
+        emittedThisTick++;
+    }
+    
+    /**
+     * 获取上一次渲染tick发射的粒子数
+     */
+    public int getEmittedThisTick() {
+        return emittedThisTick;
+    }
+    
+    /**
+     * 获取上一次渲染tick被剔除的粒子数
+     */
+    public int getCulledThisTick() {
+        return culledThisTick;
+    }
+    
+    /**
+     * 把位置量化到去重子格，三个轴各21位打包成一个long
+     */
+    private static long cellKey(double x, double y, double z) {
+        long cx = (long) Math.floor(x * DEDUP_CELLS_PER_BLOCK) & DEDUP_AXIS_MASK;
+        long cy = (long) Math.floor(y * DEDUP_CELLS_PER_BLOCK) & DEDUP_AXIS_MASK;
+        long cz = (long) Math.floor(z * DEDUP_CELLS_PER_BLOCK) & DEDUP_AXIS_MASK;
+        return cx | (cy << 21) | (cz << 42);
+    }
+    
+    /**
+     * 检查位置是否为固体方块
+     */
+    private boolean isPositionSolid(double x, double y, double z) {
+        solidityLookupsThisTick++;
+        return solidity.isSolid(x, y, z);
     }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 数据包邮箱 - 保存尚未处理的原始数据包，在客户端tick中统一处理
+ * 攻击快照每个场地只保留最新的一个（被覆盖的快照不再解码）；
+ * 控制消息按顺序全部保留，从不丢弃（丢失一个预加载分片会使整首歌无法播放），每tick都会全部取出
+ */
+public class PayloadMailbox {
+
+    // 同时等待处理的场地数上限
+    private static final int MAX_ARENAS = 64;
+
+    private final Map<String, PendingSnapshot> latestSnapshots = new ConcurrentHashMap<>();
+    private final Queue<PendingControl> controlMessages = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 尚未解码的攻击快照
+     */
+    public record PendingSnapshot(byte[] data, long receivedAtMillis) {
+    }
+
+    /**
+     * 尚未处理的控制消息
+     */
+    public record PendingControl(String message, long receivedAtMillis) {
+    }
+
+    /**
+     * 放入一个攻击快照，覆盖同一场地尚未处理的旧快照
+     */
+    public void offerSnapshot(String arenaId, byte[] data, long receivedAtMillis) {
+        if (latestSnapshots.size() >= MAX_ARENAS && !latestSnapshots.containsKey(arenaId)) {
+            MusicDodgeMetrics.getInstance().recordDroppedPacket();
+            return;
+        }
+
+        PendingSnapshot previous = latestSnapshots.put(arenaId, new PendingSnapshot(data, receivedAtMillis));
+        if (previous != null) {
+            MusicDodgeMetrics.getInstance().recordCoalescedPacket();
+        }
+    }
+
+    /**
+     * 放入一个控制消息
+     */
+    public void offerControlMessage(String message, long receivedAtMillis) {
+        controlMessages.add(new PendingControl(message, receivedAtMillis));
+    }
+
+    /**
+     * 取出下一个控制消息，没有时返回null
+     */
+    public PendingControl pollControlMessage() {
+        return controlMessages.poll();
+    }
+
+    /**
+     * 取出每个场地最新的攻击快照
+     */
+    public void drainSnapshots(List<PendingSnapshot> out) {
+        // 按键逐个原子取出，不会丢失取出过程中新到达的快照
+        for (String arenaId : latestSnapshots.keySet()) {
+            PendingSnapshot pending = latestSnapshots.remove(arenaId);
+            if (pending != null) {
+                out.add(pending);
+            }
+        }
+    }
+
+    /**
+     * 是否有待处理的控制消息
+     */
+    public boolean hasControlMessages() {
+        return !controlMessages.isEmpty();
+    }
+
+    /**
+     * 是否有待处理的攻击快照
+     */
+    public boolean hasSnapshots() {
+        return !latestSnapshots.isEmpty();
+    }
+
+    /**
+     * 清空邮箱
+     */
+    public void clear() {
+        latestSnapshots.clear();
+        controlMessages.clear();
+    }
+}
@@ -0,0 +1,109 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import net.fabricmc.fabric.api.client.rendering.v1.HudRenderCallback;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.font.TextRenderer;
+import net.minecraft.client.gui.DrawContext;
+import net.minecraft.client.render.RenderTickCounter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 性能HUD - 在游戏画面左上角显示MusicDodge各阶段的实时指标
+ * showParticleCount只显示粒子统计，debugMode显示全部指标
+ */
+public class PerformanceHud implements HudRenderCallback {
+
+    private static final int TEXT_COLOR = 0xFFFFFFFF;
+    private static final int WARN_COLOR = 0xFFFF5555;
+    private static final int BACKGROUND_COLOR = 0x80000000;
+    private static final int LINE_HEIGHT = 10;
+    private static final int MARGIN = 4;
+
+    private final MinecraftClient client;
+    private final MusicDodgeMetrics metrics;
+    private final QualityGovernor governor;
+    private final List<String> lines = new ArrayList<>();
+
+    public PerformanceHud(QualityGovernor governor) {
+        this.client = MinecraftClient.getInstance();
+        this.metrics = MusicDodgeMetrics.getInstance();
+        this.governor = governor;
+    }
+
+    /**
+     * 注册HUD渲染回调
+     */
+    public void register() {
+        HudRenderCallback.EVENT.register(this);
+    }
+
+    @Override
+    public void onHudRender(DrawContext drawContext, RenderTickCounter tickCounter) {
+        ClientConfig config = ClientConfig.getInstance();
+        if (!config.isDebugMode() && !config.isShowParticleCount()) {
+            return;
+        }
+        if (client.options.hudHidden || client.getDebugHud().shouldShowDebugHud()) {
+            return;
+        }
+
+        buildLines(config.isDebugMode());
+
+        TextRenderer textRenderer = client.textRenderer;
+        int width = 0;
+        for (String line : lines) {
+            width = Math.max(width, textRenderer.getWidth(line));
+        }
+        drawContext.fill(MARGIN - 2, MARGIN - 2, MARGIN + width + 2, MARGIN + lines.size() * LINE_HEIGHT, BACKGROUND_COLOR);
+
+        int y = MARGIN;
+        for (String line : lines) {
+            if (line.startsWith("!")) {
+                drawContext.drawTextWithShadow(textRenderer, line.substring(1), MARGIN, y, WARN_COLOR);
+            } else {
+                drawContext.drawTextWithShadow(textRenderer, line, MARGIN, y, TEXT_COLOR);
+            }
+            y += LINE_HEIGHT;
+        }
+    }
+
+    /**
+     * 生成HUD文本行，以"!"开头的行表示当前最耗时的阶段
+     */
+    private void buildLines(boolean full) {
+        lines.clear();
+
+        MusicDodgeMetrics.Stats emitted = metrics.getParticlesEmitted().getStats();
+        MusicDodgeMetrics.Stats culled = metrics.getParticlesCulled().getStats();
+        int budget = governor.getParticleBudget();
+
+        lines.add(String.format("MusicDodge  attacks: %d", metrics.getAttacksAlive()));
+
+        if (full) {
+            MusicDodgeMetrics.Stats decode = metrics.getDecodeMicros().getStats();
+            MusicDodgeMetrics.Stats render = metrics.getRenderMicros().getStats();
+            String slowest = decode.p95() >= render.p95() ? "decode" : "render";
+
+            lines.add(String.format("net: %.1f pkt/s  %.1f KB/s  coalesced %d  dropped %d",
+                metrics.getPackets().getRatePerSecond(),
+                metrics.getPayloadBytes().getRatePerSecond() / 1024.0,
+                metrics.getCoalescedPackets(), metrics.getDroppedPackets()));
+            lines.add(formatStage("decode", decode, slowest.equals("decode")));
+            lines.add(formatStage("render", render, slowest.equals("render")));
+            lines.add(String.format("%squality: %.0f%%  frame %.1fms  (target %.1fms)",
+                governor.getFrameMillis() > ClientConfig.getInstance().getTargetFrameMillis() ? "!" : "",
+                governor.getLevel() * 100, governor.getFrameMillis(), ClientConfig.getInstance().getTargetFrameMillis()));
+        }
+
+        lines.add(String.format("%sparticles/tick: avg %.0f  max %d  (budget %d)",
+            emitted.max() > budget ? "!" : "", emitted.average(), emitted.max(), budget));
+        lines.add(String.format("culled/tick: avg %.0f  max %d", culled.average(), culled.max()));
+    }
+
+    private String formatStage(String name, MusicDodgeMetrics.Stats stats, boolean slowest) {
+        return String.format("%s%s: avg %.0fµs  p95 %dµs  max %dµs",
+            slowest && stats.p95() > 0 ? "!" : "", name, stats.average(), stats.p95(), stats.max());
+    }
+}
@@ -0,0 +1,179 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderEvents;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 自适应画质调节器
+ * 根据实测帧时间和每tick渲染开销闭环调节粒子密度（渲染时的点间隔）和预警粒子预算：
+ * 超出目标帧时间时快速降低画质，持续有余量时缓慢恢复，并通过冷却时间避免画质来回振荡
+ */
+public class QualityGovernor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("QualityGovernor");
+
+    // 画质等级范围
+    private static final double MIN_LEVEL = 0.25;
+    private static final double MAX_LEVEL = 1.0;
+
+    // 降级为乘法、升级为加法（快降慢升）
+    private static final double STEP_DOWN_FACTOR = 0.85;
+    private static final double STEP_UP = 0.05;
+
+    // 帧时间指数滑动平均系数
+    private static final double EWMA_ALPHA = 0.1;
+
+    // 低于目标帧时间的该比例才认为有余量
+    private static final double HEADROOM_RATIO = 0.8;
+
+    // MusicDodge自身每tick的渲染开销不应超过目标帧时间的该比例
+    private static final double RENDER_SHARE = 0.25;
+
+    // 调整后的冷却时间（tick）
+    private static final int DOWN_COOLDOWN_TICKS = 10;
+    private static final int UP_COOLDOWN_TICKS = 60;
+
+    // 超过该值的帧间隔视为暂停或切屏，不参与统计
+    private static final long MAX_FRAME_NANOS = 1_000_000_000L;
+
+    private final List<Consumer<QualityGovernor>> listeners = new ArrayList<>();
+
+    private double level = MAX_LEVEL;
+    private double frameMillis = 0;
+    private double renderMillis = 0;
+    private long lastFrameNanos = 0;
+    private int cooldownTicks = 0;
+    private boolean active = false;
+
+    /**
+     * 注册帧回调
+     */
+    public void register() {
+        WorldRenderEvents.END.register(context -> onFrame());
+    }
+
+    /**
+     * 开始或停止采样（只在MusicDodge世界中采样）
+     */
+    public void setActive(boolean active) {
+        if (this.active == active) {
+            return;
+        }
+        this.active = active;
+        lastFrameNanos = 0;
+        frameMillis = 0;
+        renderMillis = 0;
+        cooldownTicks = 0;
+    }
+
+    /**
+     * 每帧采样帧时间
+     */
+    private void onFrame() {
+        if (!active) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        long delta = now - lastFrameNanos;
+        lastFrameNanos = now;
+        if (delta <= 0 || delta > MAX_FRAME_NANOS) {
+            return;
+        }
+
+        double millis = delta / 1_000_000.0;
+        frameMillis = frameMillis == 0 ? millis : frameMillis + EWMA_ALPHA * (millis - frameMillis);
+    }
+
+    /**
+     * 每tick更新画质等级
+     * @param renderNanos 本tick MusicDodge粒子渲染耗时
+     */
+    public void onTick(long renderNanos) {
+        ClientConfig config = ClientConfig.getInstance();
+        double renderSample = renderNanos / 1_000_000.0;
+        renderMillis = renderMillis == 0 ? renderSample : renderMillis + EWMA_ALPHA * (renderSample - renderMillis);
+
+        if (!config.isAdaptiveQuality() || !config.isEnableParticleOptimization()) {
+            setLevel(MAX_LEVEL);
+            return;
+        }
+
+        if (cooldownTicks > 0) {
+            cooldownTicks--;
+            return;
+        }
+        if (frameMillis == 0) {
+            return;
+        }
+
+        double target = config.getTargetFrameMillis();
+        boolean overBudget = frameMillis > target || renderMillis > target * RENDER_SHARE;
+        boolean hasHeadroom = frameMillis < target * HEADROOM_RATIO && renderMillis < target * RENDER_SHARE * HEADROOM_RATIO;
+
+        if (overBudget && level > MIN_LEVEL) {
+            setLevel(level * STEP_DOWN_FACTOR);
+            cooldownTicks = DOWN_COOLDOWN_TICKS;
+        } else if (hasHeadroom && level < MAX_LEVEL) {
+            setLevel(level + STEP_UP);
+            cooldownTicks = UP_COOLDOWN_TICKS;
+        }
+    }
+
+    private void setLevel(double newLevel) {
+        newLevel = Math.max(MIN_LEVEL, Math.min(MAX_LEVEL, newLevel));
+        if (newLevel == level) {
+            return;
+        }
+
+        level = newLevel;
+        if (ClientConfig.getInstance().isDebugMode()) {
+            LOGGER.info("Quality level -> {} (frame {}ms, render {}ms)",
+                String.format("%.2f", level), String.format("%.1f", frameMillis), String.format("%.2f", renderMillis));
+        }
+        for (Consumer<QualityGovernor> listener : listeners) {
+            listener.accept(this);
+        }
+    }
+
+    /**
+     * 添加画质变化监听器
+     */
+    public void addListener(Consumer<QualityGovernor> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 当前画质等级（0.25 ~ 1.0）
+     */
+    public double getLevel() {
+        return level;
+    }
+
+    /**
+     * 实际粒子密度（配置的粒子缩放 × 画质等级）
+     */
+    public double getDensity() {
+        return ClientConfig.getInstance().getParticleScale() * level;
+    }
+
+    /**
+     * 每tick粒子预算（上报给服务端；渲染时只限制预警阶段和其他场地，焦点场地的攻击阶段不受限制）
+     */
+    public int getParticleBudget() {
+        return (int) (ClientConfig.getInstance().getMaxParticlesPerFrame() * level);
+    }
+
+    public double getFrameMillis() {
+        return frameMillis;
+    }
+
+    public double getRenderMillis() {
+        return renderMillis;
+    }
+}
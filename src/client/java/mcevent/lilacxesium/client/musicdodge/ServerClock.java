@@ -0,0 +1,163 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.client.network.PlayerListEntry;
+
+/**
+ * 服务端时钟估计器
+ * 根据玩家列表中的延迟（服务端测得的RTT）和数据包中的服务端时间戳估计本地与服务端的时钟偏移，
+ * 用于把攻击的相位切换和结束时间换算到服务端时间上
+ */
+public class ServerClock {
+
+    // 每tick的毫秒数
+    public static final long MILLIS_PER_TICK = 50;
+
+    // 偏移样本窗口：取窗口内最小值以排除排队延迟
+    private static final int SAMPLE_WINDOW = 16;
+
+    // 每隔多少tick读取一次延迟
+    private static final int LATENCY_POLL_TICKS = 20;
+
+    // 延迟的指数滑动平均系数
+    private static final double RTT_ALPHA = 0.25;
+
+    private final MinecraftClient client;
+
+    // 最近的 (本地接收时间 - 服务端发送时间) 样本
+    private final long[] rawOffsets = new long[SAMPLE_WINDOW];
+    private int sampleCount = 0;
+    private int sampleCursor = 0;
+
+    private double rttMillis = 0;
+    private long offsetMillis = 0;
+    private boolean synced = false;
+    private int ticksUntilLatencyPoll = 0;
+
+    public ServerClock() {
+        this.client = MinecraftClient.getInstance();
+    }
+
+    /**
+     * 本地单调时钟（毫秒）
+     */
+    public static long localMillis() {
+        return System.nanoTime() / 1_000_000L;
+    }
+
+    /**
+     * 每tick调用，定期读取服务端测得的延迟
+     */
+    public void tick() {
+        if (--ticksUntilLatencyPoll > 0) {
+            return;
+        }
+        ticksUntilLatencyPoll = LATENCY_POLL_TICKS;
+
+        ClientPlayNetworkHandler handler = client.getNetworkHandler();
+        if (handler == null || client.player == null) {
+            return;
+        }
+        PlayerListEntry entry = handler.getPlayerListEntry(client.player.getUuid());
+        if (entry == null || entry.getLatency() <= 0) {
+            return;
+        }
+
+        int latency = entry.getLatency();
+        rttMillis = rttMillis == 0 ? latency : rttMillis + RTT_ALPHA * (latency - rttMillis);
+        recomputeOffset();
+    }
+
+    /**
+     * 记录一个带服务端时间戳的数据包
+     */
+    public void onServerTimestamp(long serverMillis, long receivedLocalMillis) {
+        rawOffsets[sampleCursor] = receivedLocalMillis - serverMillis;
+        sampleCursor = (sampleCursor + 1) % SAMPLE_WINDOW;
+        sampleCount = Math.min(sampleCount + 1, SAMPLE_WINDOW);
+        recomputeOffset();
+    }
+
+    private void recomputeOffset() {
+        if (sampleCount == 0) {
+            return;
+        }
+
+        // 最小值对应排队最少的数据包，再减去单程延迟得到时钟偏移
+        long minRaw = Long.MAX_VALUE;
+        for (int i = 0; i < sampleCount; i++) {
+            minRaw = Math.min(minRaw, rawOffsets[i]);
+        }
+        offsetMillis = minRaw - (long) getOneWayMillis();
+        synced = true;
+    }
+
+    /**
+     * 当前的服务端时间估计（毫秒）
+     * 没有收到过服务端时间戳时返回以本地时钟为基准的时间
+     */
+    public long serverNow() {
+        return toServerTime(localMillis());
+    }
+
+    /**
+     * 将本地时间换算为服务端时间
+     */
+    public long toServerTime(long localMillis) {
+        return synced ? localMillis - offsetMillis : localMillis;
+    }
+
+    /**
+     * 估计数据包的发送时间（服务端时间）
+     * 有时间戳时直接使用，时钟尚未同步时用接收时间减去单程延迟；
+     * 没有时间戳的旧格式不做延迟补偿，直接使用接收时间
+     */
+    public long estimateSendTime(long serverMillis, long receivedLocalMillis) {
+        if (serverMillis < 0) {
+            return toServerTime(receivedLocalMillis);
+        }
+        if (synced) {
+            return serverMillis;
+        }
+        return toServerTime(receivedLocalMillis) - (long) getOneWayMillis();
+    }
+
+    /**
+     * 单程延迟估计（毫秒）
+     */
+    public double getOneWayMillis() {
+        return rttMillis / 2.0;
+    }
+
+    /**
+     * 单程延迟对应的tick数（四舍五入）
+     */
+    public int getOneWayTicks() {
+        return (int) Math.round(getOneWayMillis() / MILLIS_PER_TICK);
+    }
+
+    public double getRttMillis() {
+        return rttMillis;
+    }
+
+    public long getOffsetMillis() {
+        return offsetMillis;
+    }
+
+    public boolean isSynced() {
+        return synced;
+    }
+
+    /**
+     * 清空样本（断开连接时调用）
+     */
+    public void reset() {
+        sampleCount = 0;
+        sampleCursor = 0;
+        rttMillis = 0;
+        offsetMillis = 0;
+        synced = false;
+        ticksUntilLatencyPoll = 0;
+    }
+}
@@ -0,0 +1,426 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 编译后的形状程序 - 由服务端注册的形状定义编译而成
+ * 定义由分号分隔的指令组成，每条指令为 名称:参数,参数,...
+ * 参数可以是数字常量，也可以是$n（引用攻击实例的第n个参数）
+ *
+ * 图元（在当前变换下生成点）：
+ * line:x1,z1,x2,z2,...         折线
+ * arc:cx,cz,r,起始角度,扫过角度   圆弧（角度制）
+ * band:高度,x1,z1,x2,z2,...     向上拉伸的折线带
+ * slab:x1,z1,x2,z2[,间距]       网格平板
+ *
+ * 变换（影响之后的图元）：
+ * move:dx,dy,dz  rotate:角度  scale:倍数  reset
+ */
+public class ShapeProgram {
+
+    // 单个形状的点数上限
+    public static final int MAX_POINTS = 8192;
+
+    // 折线带高度上限
+    private static final int MAX_BAND_HEIGHT = 64;
+
+    // 实例参数个数上限
+    public static final int MAX_ARGUMENTS = 16;
+
+    /**
+     * 指令类型
+     */
+    private enum Op {
+        LINE, ARC, BAND, SLAB, MOVE, ROTATE, SCALE, RESET
+    }
+
+    /**
+     * 单条指令，操作数为常量或实例参数引用
+     */
+    private static final class Instruction {
+        final Op op;
+        final double[] constants;
+        final int[] argumentIndices; // -1表示常量
+
+        Instruction(Op op, double[] constants, int[] argumentIndices) {
+            this.op = op;
+            this.constants = constants;
+            this.argumentIndices = argumentIndices;
+        }
+
+        double operand(int i, double[] arguments) {
+            int index = argumentIndices[i];
+            if (index < 0) {
+                return constants[i];
+            }
+            return index < arguments.length ? arguments[index] : 0.0;
+        }
+    }
+
+    /**
+     * 形状几何 - 相对原点的点坐标以及包围盒
+     * 点按列排列：同一列是同一水平位置上向上拉伸的各层（折线带），第c列为[columnStarts[c], columnStarts[c + 1])；
+     * 渲染时按列间隔跳过，保留的列总是绘制全部层
+     */
+    public static final class Geometry {
+        public final float[] xs;
+        public final float[] ys;
+        public final float[] zs;
+        public final int count;
+        public final int[] columnStarts;
+        public final int columnCount;
+        public final float minX, minY, minZ, maxX, maxY, maxZ;
+
+        Geometry(float[] xs, float[] ys, float[] zs, int count, int[] columnStarts, int columnCount) {
+            this.xs = xs;
+            this.ys = ys;
+            this.zs = zs;
+            this.count = count;
+            this.columnStarts = columnStarts;
+            this.columnCount = columnCount;
+
+            float x0 = Float.MAX_VALUE, y0 = Float.MAX_VALUE, z0 = Float.MAX_VALUE;
+            float x1 = -Float.MAX_VALUE, y1 = -Float.MAX_VALUE, z1 = -Float.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                x0 = Math.min(x0, xs[i]); x1 = Math.max(x1, xs[i]);
+                y0 = Math.min(y0, ys[i]); y1 = Math.max(y1, ys[i]);
+                z0 = Math.min(z0, zs[i]); z1 = Math.max(z1, zs[i]);
+            }
+            this.minX = x0; this.minY = y0; this.minZ = z0;
+            this.maxX = x1; this.maxY = y1; this.maxZ = z1;
+        }
+    }
+
+    // 编译序号：同一ID重新注册后几何可能不同，几何内存区用序号区分新旧程序
+    private static final AtomicLong NEXT_SERIAL = new AtomicLong();
+
+    private final String id;
+    private final long serial;
+    private final Instruction[] instructions;
+    private final int argumentCount;
+
+    // 最近求值过的实例参数个数：每个快照都会重新解码出新的参数对象，参数相同时直接复用几何
+    private static final int CACHE_SIZE = 16;
+
+    // 不引用实例参数的形状只需计算一次
+    private Geometry constantGeometry;
+
+    // 最近求值过的实例参数及其几何（只在客户端线程访问，按轮转替换）
+    private final double[][] cachedArguments = new double[CACHE_SIZE][];
+    private final Geometry[] cachedGeometry = new Geometry[CACHE_SIZE];
+    private int cacheCursor = 0;
+
+    private ShapeProgram(String id, Instruction[] instructions, int argumentCount) {
+        this.id = id;
+        this.serial = NEXT_SERIAL.incrementAndGet();
+        this.instructions = instructions;
+        this.argumentCount = argumentCount;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * 编译序号（每次编译唯一）
+     */
+    public long getSerial() {
+        return serial;
+    }
+
+    /**
+     * 实例需要提供的参数个数
+     */
+    public int getArgumentCount() {
+        return argumentCount;
+    }
+
+    /**
+     * 编译形状定义
+     * @throws IllegalArgumentException 定义格式错误时
+     */
+    public static ShapeProgram compile(String id, String definition) {
+        List<Instruction> instructions = new ArrayList<>();
+        int argumentCount = 0;
+
+        for (String statement : definition.split(";")) {
+            statement = statement.trim();
+            if (statement.isEmpty()) {
+                continue;
+            }
+
+            int separator = statement.indexOf(':');
+            String name = separator < 0 ? statement : statement.substring(0, separator);
+            String[] operands = separator < 0 ? new String[0] : statement.substring(separator + 1).split(",");
+
+            Op op;
+            try {
+                op = Op.valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown shape instruction: " + name);
+            }
+            checkOperandCount(op, operands.length);
+
+            double[] constants = new double[operands.length];
+            int[] argumentIndices = new int[operands.length];
+            for (int i = 0; i < operands.length; i++) {
+                String operand = operands[i].trim();
+                if (operand.startsWith("$")) {
+                    int index = Integer.parseInt(operand.substring(1));
+                    if (index < 0 || index >= MAX_ARGUMENTS) {
+                        throw new IllegalArgumentException("Shape argument out of range: " + operand);
+                    }
+                    argumentIndices[i] = index;
+                    argumentCount = Math.max(argumentCount, index + 1);
+                } else {
+                    constants[i] = Double.parseDouble(operand);
+                    argumentIndices[i] = -1;
+                }
+            }
+            if (op == Op.BAND && argumentIndices[0] < 0
+                && (!Double.isFinite(constants[0]) || constants[0] <= 0)) {
+                throw new IllegalArgumentException("Invalid band height: " + operands[0].trim());
+            }
+
+            instructions.add(new Instruction(op, constants, argumentIndices));
+        }
+
+        if (instructions.isEmpty()) {
+            throw new IllegalArgumentException("Empty shape definition");
+        }
+        return new ShapeProgram(id, instructions.toArray(new Instruction[0]), argumentCount);
+    }
+
+    private static void checkOperandCount(Op op, int count) {
+        boolean valid = switch (op) {
+            case LINE -> count >= 4 && count % 2 == 0;
+            case BAND -> count >= 5 && count % 2 == 1;
+            case ARC -> count == 5;
+            case SLAB -> count == 4 || count == 5;
+            case MOVE -> count == 3;
+            case ROTATE, SCALE -> count == 1;
+            case RESET -> count == 0;
+        };
+        if (!valid) {
+            throw new IllegalArgumentException("Wrong operand count for " + op + ": " + count);
+        }
+    }
+
+    /**
+     * 计算形状几何
+     * 不引用实例参数的形状结果会被缓存并在所有实例间共享；
+     * 引用实例参数的形状按参数值缓存最近的CACHE_SIZE个结果，攻击存续期间只求值一次
+     */
+    public Geometry evaluate(double[] arguments) {
+        if (argumentCount == 0) {
+            if (constantGeometry == null) {
+                constantGeometry = new Evaluator().run(new double[0]);
+            }
+            return constantGeometry;
+        }
+
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            if (cachedArguments[i] != null && Arrays.equals(cachedArguments[i], arguments)) {
+                return cachedGeometry[i];
+            }
+        }
+
+        Geometry geometry = new Evaluator().run(arguments);
+        cachedArguments[cacheCursor] = arguments.clone();
+        cachedGeometry[cacheCursor] = geometry;
+        cacheCursor = (cacheCursor + 1) % CACHE_SIZE;
+        return geometry;
+    }
+
+    /**
+     * 单次求值的状态：当前变换和输出缓冲区
+     */
+    private final class Evaluator {
+        // xz平面上的仿射变换 [a b; c d] + (tx, tz)，y方向单独缩放和平移
+        private double a = 1, b = 0, c = 0, d = 1, tx = 0, tz = 0;
+        private double sy = 1, ty = 0;
+
+        private float[] xs = new float[64];
+        private float[] ys = new float[64];
+        private float[] zs = new float[64];
+        private int count = 0;
+
+        // 每一列第一个点的序号
+        private int[] columnStarts = new int[64];
+        private int columnCount = 0;
+
+        // 几何内核输出缓冲区
+        private double[] localX = new double[64];
+        private double[] localZ = new double[64];
+
+        Geometry run(double[] arguments) {
+            for (Instruction instruction : instructions) {
+                execute(instruction, arguments);
+            }
+            columnStarts = Arrays.copyOf(columnStarts, columnCount + 1);
+            columnStarts[columnCount] = count;
+            return new Geometry(Arrays.copyOf(xs, count), Arrays.copyOf(ys, count), Arrays.copyOf(zs, count), count,
+                columnStarts, columnCount);
+        }
+
+        private void execute(Instruction in, double[] args) {
+            switch (in.op) {
+                case LINE -> polyline(in, args, 0, 1);
+                case BAND -> polyline(in, args, 1, bandLayers(in.operand(0, args)));
+                case ARC -> arc(in.operand(0, args), in.operand(1, args), in.operand(2, args),
+                    in.operand(3, args), in.operand(4, args));
+                case SLAB -> slab(in.operand(0, args), in.operand(1, args), in.operand(2, args), in.operand(3, args),
+                    in.constants.length == 5 ? in.operand(4, args) : 1.0);
+                case MOVE -> {
+                    double dx = in.operand(0, args);
+                    double dz = in.operand(2, args);
+                    tx += a * dx + b * dz;
+                    tz += c * dx + d * dz;
+                    ty += sy * in.operand(1, args);
+                }
+                case ROTATE -> {
+                    double angle = Math.toRadians(in.operand(0, args));
+                    double cos = Math.cos(angle);
+                    double sin = Math.sin(angle);
+                    double na = a * cos + b * sin, nb = -a * sin + b * cos;
+                    double nc = c * cos + d * sin, nd = -c * sin + d * cos;
+                    a = na; b = nb; c = nc; d = nd;
+                }
+                case SCALE -> {
+                    double scale = in.operand(0, args);
+                    a *= scale; b *= scale; c *= scale; d *= scale;
+                    sy *= scale;
+                }
+                case RESET -> {
+                    a = 1; b = 0; c = 0; d = 1; tx = 0; tz = 0;
+                    sy = 1; ty = 0;
+                }
+            }
+        }
+
+        /**
+         * 折线带的层数：常量高度在编译时已检查；由实例参数给出的高度不合法（NaN、无穷或不大于1）时按1层处理
+         */
+        private int bandLayers(double height) {
+            if (!(height >= 1)) {
+                return 1;
+            }
+            return (int) Math.min(MAX_BAND_HEIGHT, height);
+        }
+
+        /**
+         * 折线（以及向上拉伸layers层的折线带），每段由几何内核按LASER_STEP间距批量生成
+         */
+        private void polyline(Instruction in, double[] args, int first, int layers) {
+            int vertexCount = (in.constants.length - first) / 2;
+            for (int v = 0; v + 1 < vertexCount; v++) {
+                double x1 = in.operand(first + v * 2, args);
+                double z1 = in.operand(first + v * 2 + 1, args);
+                double x2 = in.operand(first + v * 2 + 2, args);
+                double z2 = in.operand(first + v * 2 + 3, args);
+
+                double length = Math.hypot(x2 - x1, z2 - z1);
+                int points = (int) Math.min(MAX_POINTS, Math.max(1, Math.ceil(length / AttackGeometry.LASER_STEP)));
+                ensureLocal(points);
+                if (length > 0) {
+                    GeometryKernel.ray((x2 - x1) / length, (z2 - z1) / length, points,
+                        AttackGeometry.LASER_STEP, localX, localZ, 0);
+                } else {
+                    localX[0] = 0;
+                    localZ[0] = 0;
+                }
+                emitLocal(x1, z1, points, layers);
+            }
+
+            // 终点
+            double xEnd = in.operand(first + vertexCount * 2 - 2, args);
+            double zEnd = in.operand(first + vertexCount * 2 - 1, args);
+            emitColumn(xEnd, zEnd, layers);
+        }
+
+        /**
+         * 圆弧，点数与CIRCLE攻击相同的密度
+         */
+        private void arc(double cx, double cz, double radius, double startDegrees, double sweepDegrees) {
+            double fraction = Math.min(1.0, Math.abs(sweepDegrees) / 360.0);
+            int points = (int) Math.max(AttackGeometry.CIRCLE_MIN_POINTS * fraction,
+                Math.abs(radius) * AttackGeometry.CIRCLE_POINTS_PER_RADIUS * fraction);
+            points = Math.min(MAX_POINTS, Math.max(points, 1));
+            boolean closed = fraction >= 1.0;
+            double step = Math.toRadians(sweepDegrees) / (closed ? points : Math.max(1, points - 1));
+
+            ensureLocal(points);
+            GeometryKernel.arc(radius, Math.toRadians(startDegrees), step, points, localX, localZ, 0);
+            emitLocal(cx, cz, points, 1);
+        }
+
+        /**
+         * 网格平板
+         */
+        private void slab(double x1, double z1, double x2, double z2, double spacing) {
+            if (spacing <= 0) {
+                return;
+            }
+            for (double x = Math.min(x1, x2); x <= Math.max(x1, x2); x += spacing) {
+                for (double z = Math.min(z1, z2); z <= Math.max(z1, z2); z += spacing) {
+                    if (count >= MAX_POINTS) {
+                        return;
+                    }
+                    emitColumn(x, z, 1);
+                }
+            }
+        }
+
+        private void emitLocal(double originX, double originZ, int points, int layers) {
+            for (int i = 0; i < points; i++) {
+                emitColumn(originX + localX[i], originZ + localZ[i], layers);
+            }
+        }
+
+        /**
+         * 输出一列：同一水平位置上从0层到layers - 1层的点
+         */
+        private void emitColumn(double x, double z, int layers) {
+            if (count >= MAX_POINTS) {
+                return;
+            }
+            if (columnCount + 1 >= columnStarts.length) {
+                columnStarts = Arrays.copyOf(columnStarts, columnStarts.length * 2);
+            }
+            columnStarts[columnCount++] = count;
+            for (int layer = 0; layer < layers; layer++) {
+                emit(x, layer, z);
+            }
+        }
+
+        /**
+         * 以当前变换输出一个点
+         */
+        private void emit(double x, double y, double z) {
+            if (count >= MAX_POINTS) {
+                return;
+            }
+            if (count == xs.length) {
+                int capacity = Math.min(MAX_POINTS, xs.length * 2);
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+                zs = Arrays.copyOf(zs, capacity);
+            }
+            xs[count] = (float) (a * x + b * z + tx);
+            ys[count] = (float) (sy * y + ty);
+            zs[count] = (float) (c * x + d * z + tz);
+            count++;
+        }
+
+        private void ensureLocal(int points) {
+            if (localX.length < points) {
+                localX = new double[points];
+                localZ = new double[points];
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 形状注册表 - 保存本次会话中服务端注册的形状程序
+ * 服务端通过控制消息 !SHAPE|形状ID|形状定义 注册形状，之后的SHAPE攻击只需发送形状ID和参数
+ * 断开连接时清空
+ */
+public class ShapeRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("ShapeRegistry");
+    private static ShapeRegistry instance;
+
+    // 控制消息名
+    public static final String SHAPE_MESSAGE = "SHAPE";
+
+    // 每个会话的形状数量上限
+    private static final int MAX_SHAPES = 1024;
+
+    private final Map<String, ShapeProgram> programs = new HashMap<>();
+
+    private ShapeRegistry() {
+    }
+
+    public static ShapeRegistry getInstance() {
+        if (instance == null) {
+            instance = new ShapeRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * 判断是否为形状注册消息
+     */
+    public static boolean isShapeMessage(String message) {
+        return message.startsWith(SongPlayback.CONTROL_PREFIX + SHAPE_MESSAGE + "|");
+    }
+
+    /**
+     * 处理形状注册消息：!SHAPE|形状ID|形状定义
+     */
+    public void handleControlMessage(String message) {
+        String[] parts = message.substring(1).split("\\|", 3);
+        if (parts.length != 3 || parts[1].isEmpty()) {
+            return;
+        }
+        register(parts[1], parts[2]);
+    }
+
+    /**
+     * 编译并注册形状，同ID的形状会被替换
+     */
+    public void register(String id, String definition) {
+        if (!programs.containsKey(id) && programs.size() >= MAX_SHAPES) {
+            LOGGER.warn("Shape limit reached, ignoring shape {}", id);
+            return;
+        }
+
+        try {
+            programs.put(id, ShapeProgram.compile(id, definition));
+            if (ClientConfig.getInstance().isDebugMode()) {
+                LOGGER.info("Registered shape {}: {}", id, definition);
+            }
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException也是IllegalArgumentException
+            LOGGER.warn("Failed to compile shape {}: {}", id, e.getMessage());
+        }
+    }
+
+    /**
+     * 获取形状程序，未注册时返回null
+     */
+    public ShapeProgram get(String id) {
+        return programs.get(id);
+    }
+
+    public int size() {
+        return programs.size();
+    }
+
+    /**
+     * 清空所有形状（断开连接时调用）
+     */
+    public void clear() {
+        programs.clear();
+    }
+}
@@ -0,0 +1,14 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+/**
+ * 方块固体判定 - 渲染和命中判定通过它查询地形，截断射线、剔除埋在方块里的粒子
+ * 游戏中由WorldSolidity查询客户端世界，测试中可以用固定的地形代替
+ */
+@FunctionalInterface
+public interface SolidityLookup {
+
+    /**
+     * 位置所在的方块是否为固体
+     */
+    boolean isSolid(double x, double y, double z);
+}
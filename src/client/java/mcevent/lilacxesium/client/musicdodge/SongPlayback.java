@@ -0,0 +1,271 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * 谱面播放器 - 接收预加载的整首歌谱面，并按与服务端同步的歌曲时钟在本地激活攻击
+ * 播放期间服务端只需发送开始/跳转/停止和时钟校正消息
+ *
+ * 控制消息格式（以"!"开头）：
+ * !PRELOAD|歌曲ID|分片序号|分片总数|Base64(Deflate(时间轴))
+ * !START|歌曲ID|歌曲tick
+ * !SEEK|歌曲ID|歌曲tick
+ * !SYNC|歌曲ID|歌曲tick
+ * !STOP|歌曲ID
+ */
+public class SongPlayback {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("SongPlayback");
+
+    // 控制消息前缀
+    public static final char CONTROL_PREFIX = '!';
+
+    // 偏差超过该值时直接跳转，否则每tick校正1tick
+    private static final int SNAP_THRESHOLD_TICKS = 10;
+
+    // 预加载分片数上限
+    private static final int MAX_PRELOAD_CHUNKS = 4096;
+
+    private final ServerClock serverClock;
+
+    // 正在接收的预加载分片
+    private String pendingSongId;
+    private String[] pendingChunks;
+    private int pendingReceived;
+
+    private SongTimeline timeline;
+    private boolean playing = false;
+    private int songTick = 0;
+    private int pendingCorrection = 0;
+
+    // 当前活跃攻击（双缓冲，活跃集合不变时不替换列表）
+    private List<AttackDataDecoder.AttackData> activeAttacks = new ArrayList<>();
+    private List<AttackDataDecoder.AttackData> scratchAttacks = new ArrayList<>();
+
+    public SongPlayback(ServerClock serverClock) {
+        this.serverClock = serverClock;
+    }
+
+    /**
+     * 判断是否为控制消息
+     */
+    public static boolean isControlMessage(String message) {
+        return !message.isEmpty() && message.charAt(0) == CONTROL_PREFIX;
+    }
+
+    /**
+     * 处理控制消息
+     * @param receivedAtMillis 收到消息的本地时间，歌曲tick按单程延迟和在邮箱中等待的时间补偿
+     */
+    public void handleControlMessage(String message, long receivedAtMillis) {
+        String[] parts = message.substring(1).split("\\|");
+        if (parts.length < 2) {
+            return;
+        }
+        int lagTicks = serverClock.getOneWayTicks()
+            + (int) (Math.max(0, ServerClock.localMillis() - receivedAtMillis) / ServerClock.MILLIS_PER_TICK);
+
+        try {
+            switch (parts[0]) {
+                case "PRELOAD":
+                    if (parts.length == 5) {
+                        handlePreloadChunk(parts[1], Integer.parseInt(parts[2]), Integer.parseInt(parts[3]), parts[4]);
+                    }
+                    break;
+                case "START":
+                    if (parts.length == 3 && isLoaded(parts[1])) {
+                        seek(Integer.parseInt(parts[2]) + lagTicks);
+                        playing = true;
+                    }
+                    break;
+                case "SEEK":
+                    if (parts.length == 3 && isLoaded(parts[1])) {
+                        seek(Integer.parseInt(parts[2]) + lagTicks);
+                    }
+                    break;
+                case "SYNC":
+                    if (parts.length == 3 && isLoaded(parts[1])) {
+                        sync(Integer.parseInt(parts[2]) + lagTicks);
+                    }
+                    break;
+                case "STOP":
+                    if (isLoaded(parts[1])) {
+                        stop();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            // 忽略格式错误的控制消息
+        }
+    }
+
+    /**
+     * 接收一个预加载分片，分片收齐后解码时间轴
+     */
+    private void handlePreloadChunk(String songId, int index, int count, String chunk) {
+        if (count <= 0 || count > MAX_PRELOAD_CHUNKS || index < 0 || index >= count) {
+            return;
+        }
+
+        if (!songId.equals(pendingSongId) || pendingChunks == null || pendingChunks.length != count) {
+            pendingSongId = songId;
+            pendingChunks = new String[count];
+            pendingReceived = 0;
+        }
+        if (pendingChunks[index] == null) {
+            pendingReceived++;
+        }
+        pendingChunks[index] = chunk;
+
+        if (pendingReceived < count) {
+            return;
+        }
+
+        try {
+            byte[] compressed = Base64.getDecoder().decode(String.join("", pendingChunks));
+            SongTimeline loaded = SongTimeline.decode(songId, compressed);
+            stop();
+            timeline = loaded;
+
+            if (ClientConfig.getInstance().isDebugMode()) {
+                LOGGER.info("Preloaded song {}: {} attacks, {} ticks", songId, loaded.size(), loaded.getEndTick());
+            }
+        } catch (Exception e) {
+            LOGGER.error("Failed to decode preloaded song {}: {}", songId, e.getMessage());
+        } finally {
+            pendingSongId = null;
+            pendingChunks = null;
+            pendingReceived = 0;
+        }
+    }
+
+    private boolean isLoaded(String songId) {
+        if (timeline != null && timeline.getSongId().equals(songId)) {
+            return true;
+        }
+        LOGGER.warn("Ignoring control message for song {} that has not been preloaded", songId);
+        return false;
+    }
+
+    /**
+     * 推进歌曲时钟一个tick
+     */
+    public void tick() {
+        if (!playing) {
+            return;
+        }
+
+        // 平滑校正：每tick最多多走或少走1tick
+        int step = 1 + Integer.signum(pendingCorrection);
+        pendingCorrection -= Integer.signum(pendingCorrection);
+        songTick += step;
+
+        refreshActiveAttacks();
+
+        // 全部攻击结束后自动停止
+        if (activeAttacks.isEmpty() && songTick >= timeline.getEndTick()) {
+            playing = false;
+        }
+    }
+
+    /**
+     * 跳转到指定tick
+     */
+    public void seek(int tick) {
+        songTick = tick;
+        pendingCorrection = 0;
+        refreshActiveAttacks();
+    }
+
+    /**
+     * 根据服务端的歌曲tick（已补偿单程延迟）校正本地时钟
+     */
+    public void sync(int serverTick) {
+        int drift = serverTick - songTick;
+        if (Math.abs(drift) > SNAP_THRESHOLD_TICKS) {
+            seek(serverTick);
+        } else {
+            pendingCorrection = drift;
+        }
+    }
+
+    /**
+     * 停止播放（保留已加载的时间轴）
+     */
+    public void stop() {
+        playing = false;
+        pendingCorrection = 0;
+        activeAttacks.clear();
+    }
+
+    /**
+     * 停止播放并丢弃时间轴
+     */
+    public void reset() {
+        stop();
+        timeline = null;
+        pendingSongId = null;
+        pendingChunks = null;
+        pendingReceived = 0;
+    }
+
+    private void refreshActiveAttacks() {
+        if (timeline == null) {
+            return;
+        }
+
+        scratchAttacks.clear();
+        timeline.collectActive(songTick, scratchAttacks);
+
+        if (!sameAttacks(scratchAttacks, activeAttacks)) {
+            List<AttackDataDecoder.AttackData> previous = activeAttacks;
+            activeAttacks = scratchAttacks;
+            scratchAttacks = previous;
+        }
+    }
+
+    private static boolean sameAttacks(List<AttackDataDecoder.AttackData> a, List<AttackDataDecoder.AttackData> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 当前活跃攻击（只读，活跃集合不变时返回同一个列表）
+     */
+    public List<AttackDataDecoder.AttackData> getActiveAttacks() {
+        return activeAttacks;
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    /**
+     * 是否正在播放、已预加载谱面或正在接收谱面分片（此时即使不在MusicDodge世界中也需要推进时钟）
+     */
+    public boolean isActive() {
+        return playing || timeline != null || pendingChunks != null;
+    }
+
+    public int getSongTick() {
+        return songTick;
+    }
+
+    public SongTimeline getTimeline() {
+        return timeline;
+    }
+}
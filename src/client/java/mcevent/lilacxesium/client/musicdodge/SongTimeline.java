@@ -0,0 +1,180 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 歌曲谱面时间轴 - 整首歌的攻击序列的紧凑索引
+ * 按起始tick排序的并列数组，查询某一tick的活跃攻击只需扫描一个很小的窗口
+ */
+public class SongTimeline {
+
+    // 解压后的谱面大小上限，防止异常数据占用过多内存
+    private static final int MAX_INFLATED_BYTES = 8 * 1024 * 1024;
+
+    private final String songId;
+    private final int[] startTicks;
+    private final int[] alertTicks;
+    private final int[] attackTicks;
+
+    // 每个攻击在两个相位下的AttackData（加载时创建一次，播放时不再分配）
+    private final AttackDataDecoder.AttackData[] alertData;
+    private final AttackDataDecoder.AttackData[] attackData;
+
+    // 最长的攻击持续时间，用于确定查询窗口
+    private final int maxDuration;
+
+    // 最后一个攻击结束的tick
+    private final int endTick;
+
+    private SongTimeline(String songId, List<Entry> entries) {
+        entries.sort(Comparator.comparingInt(entry -> entry.startTick));
+
+        int size = entries.size();
+        this.songId = songId;
+        this.startTicks = new int[size];
+        this.alertTicks = new int[size];
+        this.attackTicks = new int[size];
+        this.alertData = new AttackDataDecoder.AttackData[size];
+        this.attackData = new AttackDataDecoder.AttackData[size];
+
+        int longest = 0;
+        int end = 0;
+        for (int i = 0; i < size; i++) {
+            Entry entry = entries.get(i);
+            startTicks[i] = entry.startTick;
+            alertTicks[i] = entry.alertTicks;
+            attackTicks[i] = entry.attackTicks;
+            alertData[i] = new AttackDataDecoder.AttackData(entry.parameters.getType(),
+                AttackDataDecoder.AttackPhase.ALERT, entry.alertTicks, entry.parameters, entry.attackTicks);
+            attackData[i] = new AttackDataDecoder.AttackData(entry.parameters.getType(),
+                AttackDataDecoder.AttackPhase.ATTACK, entry.attackTicks, entry.parameters);
+            longest = Math.max(longest, entry.alertTicks + entry.attackTicks);
+            end = Math.max(end, entry.startTick + entry.alertTicks + entry.attackTicks);
+        }
+        this.maxDuration = longest;
+        this.endTick = end;
+    }
+
+    /**
+     * 时间轴中的单个攻击（仅在解码时使用）
+     */
+    private record Entry(int startTick, int alertTicks, int attackTicks, AttackDataDecoder.AttackParameters parameters) {
+    }
+
+    /**
+     * 解码压缩后的谱面
+     * 解压后格式：起始tick|预警时长|攻击时长|攻击类型|参数#起始tick|预警时长|攻击时长|攻击类型|参数
+     */
+    public static SongTimeline decode(String songId, byte[] compressed) throws DataFormatException {
+        String text = new String(inflate(compressed), StandardCharsets.UTF_8);
+
+        List<Entry> entries = new ArrayList<>();
+        for (String entryString : text.split("#")) {
+            Entry entry = decodeEntry(entryString);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+
+        return new SongTimeline(songId, entries);
+    }
+
+    /**
+     * 解码单个时间轴条目，格式错误时返回null
+     */
+    private static Entry decodeEntry(String entryString) {
+        String[] parts = entryString.split("\\|");
+        if (parts.length != 5) {
+            return null;
+        }
+
+        try {
+            int startTick = Integer.parseInt(parts[0]);
+            int alert = Integer.parseInt(parts[1]);
+            int attack = Integer.parseInt(parts[2]);
+            AttackDataDecoder.AttackType type = AttackDataDecoder.AttackType.valueOf(parts[3]);
+            AttackDataDecoder.AttackParameters parameters = AttackDataDecoder.parseParameters(type, parts[4]);
+            if (parameters == null || alert < 0 || attack < 0) {
+                return null;
+            }
+            return new Entry(startTick, alert, attack, parameters);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated chart data");
+                }
+                out.write(buffer, 0, count);
+                if (out.size() > MAX_INFLATED_BYTES) {
+                    throw new DataFormatException("Chart data too large");
+                }
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 将指定tick的活跃攻击写入列表
+     */
+    public void collectActive(int songTick, List<AttackDataDecoder.AttackData> out) {
+        // 起始tick早于 songTick - maxDuration 的攻击一定已经结束
+        int from = lowerBound(songTick - maxDuration + 1);
+        for (int i = from; i < startTicks.length && startTicks[i] <= songTick; i++) {
+            int elapsed = songTick - startTicks[i];
+            if (elapsed < alertTicks[i]) {
+                out.add(alertData[i]);
+            } else if (elapsed < alertTicks[i] + attackTicks[i]) {
+                out.add(attackData[i]);
+            }
+        }
+    }
+
+    /**
+     * 第一个起始tick不小于tick的下标
+     */
+    private int lowerBound(int tick) {
+        int index = Arrays.binarySearch(startTicks, tick);
+        if (index < 0) {
+            return -index - 1;
+        }
+        // 存在相同起始tick时回退到第一个
+        while (index > 0 && startTicks[index - 1] == tick) {
+            index--;
+        }
+        return index;
+    }
+
+    public String getSongId() {
+        return songId;
+    }
+
+    public int size() {
+        return startTicks.length;
+    }
+
+    /**
+     * 最后一个攻击结束的tick
+     */
+    public int getEndTick() {
+        return endTick;
+    }
+}
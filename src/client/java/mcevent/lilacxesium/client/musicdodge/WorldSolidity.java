@@ -0,0 +1,33 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * 按客户端世界的方块状态判定固体（复用BlockPos，每tick设置一次当前世界）
+ */
+public class WorldSolidity implements SolidityLookup {
+
+    private final BlockPos.Mutable blockPos = new BlockPos.Mutable();
+    private ClientWorld world;
+
+    /**
+     * 设置要查询的世界
+     */
+    public void setWorld(ClientWorld world) {
+        this.world = world;
+    }
+
+    @Override
+    public boolean isSolid(double x, double y, double z) {
+        if (world == null) {
+            return true;
+        }
+        try {
+            blockPos.set(x, y, z);
+            return world.getBlockState(blockPos).isSolidBlock(world, blockPos);
+        } catch (Exception e) {
+            return true; // 安全起见，遇到错误时认为是固体
+        }
+    }
+}
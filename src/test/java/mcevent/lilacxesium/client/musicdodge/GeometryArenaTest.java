@@ -0,0 +1,40 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 几何内存区的查找 - 指纹碰撞时保留先保存的几何，不覆盖索引
+ */
+class GeometryArenaTest {
+
+    private static final long FINGERPRINT = 42L;
+
+    private final double[] first = {1.0, -60.0, 2.0};
+    private final double[] second = {3.0, -60.0, 4.0};
+    private final float[] data = {1.0f, -60.0f, 2.0f};
+
+    @Test
+    void collidingKeyDoesNotReplaceStoredGeometry() {
+        GeometryArena arena = new GeometryArena();
+        long handle = arena.store(FINGERPRINT, first, first.length, data, 1, 0);
+        assertTrue(handle >= 0);
+        long used = arena.usedBytes();
+
+        assertEquals(GeometryArena.FINGERPRINT_COLLISION, arena.find(FINGERPRINT, second, second.length));
+        assertEquals(handle, arena.find(FINGERPRINT, first, first.length));
+        assertEquals(used, arena.usedBytes());
+    }
+
+    @Test
+    void resetForgetsStoredGeometry() {
+        GeometryArena arena = new GeometryArena();
+        arena.store(FINGERPRINT, first, first.length, data, 1, 0);
+        arena.reset();
+
+        assertEquals(GeometryArena.NO_GEOMETRY, arena.find(FINGERPRINT, first, first.length));
+        assertEquals(0, arena.usedBytes());
+    }
+}
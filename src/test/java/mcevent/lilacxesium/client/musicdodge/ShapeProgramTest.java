@@ -0,0 +1,44 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 形状程序的编译检查 - 指令名与系统语言无关，不合法的折线带高度在编译时拒绝
+ */
+class ShapeProgramTest {
+
+    @Test
+    void instructionNamesIgnoreDefaultLocale() {
+        Locale previous = Locale.getDefault();
+        // 土耳其语中"i"的大写是"İ"
+        Locale.setDefault(Locale.forLanguageTag("tr"));
+        try {
+            ShapeProgram program = ShapeProgram.compile("line", "line:0,0,4,0");
+            assertTrue(program.evaluate(new double[0]).count > 0);
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+
+    @Test
+    void invalidConstantBandHeightIsRejected() {
+        for (String height : new String[] {"NaN", "Infinity", "0", "-2"}) {
+            assertThrows(IllegalArgumentException.class,
+                () -> ShapeProgram.compile("band", "band:" + height + ",0,0,4,0"));
+        }
+    }
+
+    @Test
+    void invalidArgumentBandHeightDrawsOneLayer() {
+        ShapeProgram program = ShapeProgram.compile("band", "band:$0,0,0,4,0");
+        ShapeProgram.Geometry oneLayer = program.evaluate(new double[] {1});
+        assertEquals(oneLayer.count, program.evaluate(new double[] {Double.NaN}).count);
+        assertTrue(oneLayer.count > 0);
+    }
+}
@@ -0,0 +1,46 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import net.minecraft.util.math.Box;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 旋转射线的地形截断 - 降低画质（粒子间隔大于1）时，绘制的射线必须与HitTester在同一个方块处截断
+ */
+class SpinRayTest {
+
+    // 一条沿+x方向的射线，长30格
+    private final AttackDataDecoder.SpinParameters spin =
+        new AttackDataDecoder.SpinParameters(0.0, -60.0, 0.0, 1, 0.0, 30);
+
+    // x=5（奇数距离）处有一格厚的墙
+    private final SolidityLookup wall = (x, y, z) -> Math.floor(x) == 5;
+
+    @Test
+    void stridedRayStopsAtWallBetweenSampledPoints() {
+        double angle = AttackGeometry.spinRayRadians(spin, 0);
+        int reach = AttackGeometry.spinRayReach(spin, Math.cos(angle), Math.sin(angle), spin.maxDistance, wall);
+        assertEquals(5, reach);
+
+        // 间隔为2时在距离0、2、4绘制，不会跨过墙画到距离6
+        int stride = 2;
+        int points = AttackGeometry.spinRayPoints(reach, stride);
+        assertEquals(3, points);
+        assertTrue((points - 1) * stride < reach);
+    }
+
+    @Test
+    void hitTesterCutsRayAtTheSameWall() {
+        HitTester hitTester = new HitTester();
+        AttackDataDecoder.AttackData attack = new AttackDataDecoder.AttackData(
+            AttackDataDecoder.AttackType.SPIN, AttackDataDecoder.AttackPhase.ATTACK, 20, spin);
+
+        Box beforeWall = new Box(2.7, -60.0, -0.3, 3.3, -58.2, 0.3);
+        Box behindWall = new Box(6.7, -60.0, -0.3, 7.3, -58.2, 0.3);
+        assertTrue(hitTester.intersects(attack, beforeWall, wall));
+        assertFalse(hitTester.intersects(attack, behindWall, wall));
+    }
+}
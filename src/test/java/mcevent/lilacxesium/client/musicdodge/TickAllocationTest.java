@@ -0,0 +1,136 @@
+package mcevent.lilacxesium.client.musicdodge;
+
+import net.minecraft.util.math.Box;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 客户端tick各阶段的分配量测试 - 用录制格式的攻击快照驱动解码、调度、几何构建和命中判定，
+ * 预热（JIT编译、缓冲区扩容、几何内存区填充）之后用ThreadMXBean统计每次调用在本线程上分配的字节数
+ *
+ * 世界用固定的地形代替：x=20处有一排y=-60的方块，向+x方向的旋转射线在这里截断
+ */
+class TickAllocationTest {
+
+    // 预热调用次数和统计调用次数
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int MEASURED_ITERATIONS = 2_000;
+
+    // 解码每个攻击允许的字节数（AttackData、参数对象和列表扩容）
+    private static final long DECODE_BYTES_PER_ATTACK = 256;
+
+    // 与服务端发送格式相同的快照：带快照头，覆盖全部攻击类型，预警都带攻击时长
+    private static final String SNAPSHOT = "@t=1700000000000,a=arena1,ox=64,oz=0"
+        + "#LASER|10.0,-60.0,-20.0,30.0,-60.0,-20.0|GRAY|240|40"
+        + "#SQUARE_RING|14.0,-60.0,-25.0,3,6|RED|60"
+        + "#SPIN|14.0,-60.0,-25.0,5,0.0,30|RED|120"
+        + "#CIRCLE|14.0,-60.0,-25.0,8.5|GRAY|100|20"
+        + "#WALL|x,12|RED|80"
+        + "#SHAPE|cross,14,-60,-25,45|RED|40"
+        + "#SHAPE|tower,0,-60,-10,3|GRAY|200|20";
+
+    private static final int SNAPSHOT_ATTACKS = 7;
+
+    private static final long SEND_TIME = 1_700_000_000_000L;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    private final SolidityLookup terrain = (x, y, z) -> Math.floor(x) == 20 && Math.floor(y) == -60;
+    private final byte[] payload = SNAPSHOT.getBytes(StandardCharsets.US_ASCII);
+    private List<AttackDataDecoder.AttackData> attacks;
+
+    @BeforeAll
+    static void setUpThreadBean() {
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @BeforeEach
+    void setUp() {
+        ShapeRegistry.getInstance().clear();
+        ShapeRegistry.getInstance().register("cross", "rotate:$0;line:-10,0,10,0;line:0,-10,0,10");
+        ShapeRegistry.getInstance().register("tower", "band:$0,0,0,6,0,6,6;slab:-2,-2,2,2");
+        attacks = AttackDataDecoder.decodeSnapshot(payload).attacks;
+        assertEquals(SNAPSHOT_ATTACKS, attacks.size());
+    }
+
+    @Test
+    void decodeAllocatesOnlyTheDecodedAttacks() {
+        long bytes = bytesPerIteration(() -> AttackDataDecoder.decodeSnapshot(payload));
+        assertBudget("decode", bytes, SNAPSHOT_ATTACKS * DECODE_BYTES_PER_ATTACK);
+    }
+
+    @Test
+    void scheduleDoesNotAllocateBetweenPhaseSwitches() {
+        AttackSchedule schedule = new AttackSchedule();
+        // 快照内最早的相位切换在40tick（2000ms）之后，统计期间不会创建新的AttackData
+        long bytes = bytesPerIteration(() -> {
+            schedule.apply(attacks, SEND_TIME, SEND_TIME + 100, true);
+            schedule.advance(SEND_TIME + 1000);
+        });
+        assertEquals(SNAPSHOT_ATTACKS, schedule.getVisibleAttacks().size());
+        assertBudget("schedule", bytes, 0);
+    }
+
+    @Test
+    void cachedGeometryDoesNotAllocate() {
+        GeometryBuilder builder = new GeometryBuilder(new GeometryArena());
+        long bytes = bytesPerIteration(() -> {
+            for (int i = 0; i < attacks.size(); i++) {
+                builder.resolve(attacks.get(i).parameters);
+            }
+        });
+        assertBudget("geometry", bytes, 0);
+    }
+
+    @Test
+    void geometryOfRedecodedSnapshotsIsReused() {
+        GeometryArena arena = new GeometryArena();
+        GeometryBuilder builder = new GeometryBuilder(arena);
+        for (AttackDataDecoder.AttackData attack : attacks) {
+            builder.resolve(attack.parameters);
+        }
+        long used = arena.usedBytes();
+
+        // 每个快照都会解码出新的参数对象，几何仍然按参数值复用
+        for (AttackDataDecoder.AttackData attack : AttackDataDecoder.decodeSnapshot(payload).attacks) {
+            builder.resolve(attack.parameters);
+        }
+        assertEquals(used, arena.usedBytes());
+    }
+
+    @Test
+    void hitTestDoesNotAllocate() {
+        HitTester hitTester = new HitTester();
+        // 站在旋转射线被截断的方块之后，每条射线都要查询地形
+        Box player = new Box(21.7, -60.0, -25.3, 22.3, -58.2, -24.7);
+        long bytes = bytesPerIteration(() -> hitTester.test(attacks, player, terrain));
+        assertBudget("hit test", bytes, 0);
+    }
+
+    /**
+     * 预热后统计一次调用在本线程上分配的平均字节数
+     */
+    private static long bytesPerIteration(Runnable stage) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            stage.run();
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            stage.run();
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - before) / MEASURED_ITERATIONS;
+    }
+
+    private static void assertBudget(String stage, long bytes, long budget) {
+        assertTrue(bytes <= budget, stage + " allocated " + bytes + " bytes per call (budget " + budget + ")");
+    }
+}